@@ -0,0 +1,140 @@
+package org.rutz.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.rutz.Company;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds synthetic Company graphs of a given shape for the benchmarks.
+ * Values are deterministic, so runs with the same parameters convert identical documents.
+ */
+public final class CompanyGenerator {
+
+    private CompanyGenerator() {
+    }
+
+    /**
+     * @param branches       Number of branches.
+     * @param teamsPerBranch Number of teams in every branch.
+     * @param membersPerTeam Number of members in every team.
+     * @param tasksPerMember Number of tasks, and of campaigns, of every member.
+     * @return A company with {@code branches * teamsPerBranch * membersPerTeam} members.
+     */
+    public static Company generate(int branches, int teamsPerBranch, int membersPerTeam, int tasksPerMember) {
+        List<Company.Branch> branchList = new ArrayList<>(branches);
+        for (int b = 0; b < branches; b++) {
+            List<Company.Team> teams = new ArrayList<>(teamsPerBranch);
+            for (int t = 0; t < teamsPerBranch; t++) {
+                List<Company.Member> members = new ArrayList<>(membersPerTeam);
+                for (int m = 0; m < membersPerTeam; m++) {
+                    String id = b + "-" + t + "-" + m;
+                    List<Company.Task> tasks = new ArrayList<>(tasksPerMember);
+                    List<Company.Campaign> campaigns = new ArrayList<>(tasksPerMember);
+                    for (int k = 0; k < tasksPerMember; k++) {
+                        tasks.add(Company.Task.builder()
+                                .taskId("T" + id + "-" + k)
+                                .description("Develop API & <client> " + k)
+                                .status(k % 2 == 0 ? "Completed" : "Open")
+                                .build());
+                        campaigns.add(Company.Campaign.builder()
+                                .campaignId("C" + id + "-" + k)
+                                .name("Winter Sale " + k)
+                                .status("Ongoing")
+                                .build());
+                    }
+                    members.add(Company.Member.builder()
+                            .id("S" + id)
+                            .name("Member " + id)
+                            .role(m == 0 ? "Lead Developer" : "Developer")
+                            .salary((1000 + m) + ".45")
+                            .tasks(tasks)
+                            .campaigns(campaigns)
+                            .build());
+                }
+                teams.add(Company.Team.builder()
+                        .teamNameSD("Software Development SD " + b + "-" + t)
+                        .teamNameMK("Software Development MK " + b + "-" + t)
+                        .members(members)
+                        .build());
+            }
+            branchList.add(Company.Branch.builder()
+                    .branchNameNA("North America " + b)
+                    .branchNameEU("North America Branch EU " + b)
+                    .teams(teams)
+                    .build());
+        }
+        return Company.builder()
+                .companyName("Global Enterprises")
+                .companyLocation("London")
+                .branches(branchList)
+                .build();
+    }
+
+    /**
+     * @return The company of {@link #generate} serialized as UTF-8 JSON, with fields in declaration order.
+     */
+    public static byte[] generateJson(int branches, int teamsPerBranch, int membersPerTeam, int tasksPerMember) throws IOException {
+        Company company = generate(branches, teamsPerBranch, membersPerTeam, tasksPerMember);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = new JsonFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("companyName", company.getCompanyName());
+            json.writeStringField("companyLocation", company.getCompanyLocation());
+            json.writeArrayFieldStart("branches");
+            for (Company.Branch branch : company.getBranches()) {
+                json.writeStartObject();
+                json.writeStringField("branchNameNA", branch.getBranchNameNA());
+                json.writeStringField("branchNameEU", branch.getBranchNameEU());
+                json.writeArrayFieldStart("teams");
+                for (Company.Team team : branch.getTeams()) {
+                    json.writeStartObject();
+                    json.writeStringField("teamNameSD", team.getTeamNameSD());
+                    json.writeStringField("teamNameMK", team.getTeamNameMK());
+                    json.writeArrayFieldStart("members");
+                    for (Company.Member member : team.getMembers()) {
+                        writeMember(json, member);
+                    }
+                    json.writeEndArray();
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeMember(JsonGenerator json, Company.Member member) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("id", member.getId());
+        json.writeStringField("name", member.getName());
+        json.writeStringField("role", member.getRole());
+        json.writeStringField("salary", member.getSalary());
+        json.writeArrayFieldStart("tasks");
+        for (Company.Task task : member.getTasks()) {
+            json.writeStartObject();
+            json.writeStringField("taskId", task.getTaskId());
+            json.writeStringField("description", task.getDescription());
+            json.writeStringField("status", task.getStatus());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeArrayFieldStart("campaigns");
+        for (Company.Campaign campaign : member.getCampaigns()) {
+            json.writeStartObject();
+            json.writeStringField("campaignId", campaign.getCampaignId());
+            json.writeStringField("name", campaign.getName());
+            json.writeStringField("status", campaign.getStatus());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+}
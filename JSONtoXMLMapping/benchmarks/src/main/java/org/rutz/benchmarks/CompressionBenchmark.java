@@ -0,0 +1,50 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rutz.Company;
+import org.rutz.ExcelMappingReader;
+import org.rutz.MappingPlan;
+import org.rutz.XmlBuilder;
+import org.rutz.XmlWriteOptions;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures streaming the largest Company shape compressed, sequentially or in parallel blocks, against uncompressed
+ * output. Parallel compression needs several cores to pay off; compare the score with the number of cores available.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+    @Param({"NONE", "GZIP", "DEFLATE"})
+    public XmlWriteOptions.Compression compression;
+
+    @Param({"false", "true"})
+    public boolean parallelCompression;
+
+    @Param({"262144"})
+    public int compressionBlockSize;
+
+    private MappingPlan plan;
+    private Company company;
+    private XmlWriteOptions options;
+
+    @Setup
+    public void setUp() throws Exception {
+        plan = MappingPlan.compile(ExcelMappingReader.readMappings("my.xlsx")).withGeneratedExtractors(Company.class);
+        company = CompanyGenerator.generate(50, 4, 25, 3);
+        options = XmlWriteOptions.builder().prettyPrint(false).compression(compression)
+                .parallelCompression(parallelCompression).compressionBlockSize(compressionBlockSize).build();
+    }
+
+    @Benchmark
+    public void streamXml() throws Exception {
+        XmlBuilder.streamXml(plan, company, OutputStream.nullOutputStream(), options);
+    }
+}
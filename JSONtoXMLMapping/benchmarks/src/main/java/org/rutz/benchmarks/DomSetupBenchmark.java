@@ -0,0 +1,70 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the fixed cost DOM mode pays per document, on a two-element document so that setup dominates.
+ * {@code newInstancePerDocument} looks up the JAXP factories and configures a Transformer for every document, as
+ * {@link org.rutz.XmlBuilder#buildXml} used to; {@code cachedPerThread} reuses one DocumentBuilder and one configured
+ * Transformer per thread, as it does now. {@link XmlBuilderBenchmark#buildXml} shows the effect on whole conversions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Thread)
+public class DomSetupBenchmark {
+
+    private DocumentBuilder documentBuilder;
+    private Transformer transformer;
+
+    @Setup
+    public void setUp() throws Exception {
+        documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        transformer = TransformerFactory.newInstance().newTransformer();
+        configure(transformer);
+    }
+
+    @Benchmark
+    public void newInstancePerDocument() throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Transformer perDocument = TransformerFactory.newInstance().newTransformer();
+        configure(perDocument);
+        perDocument.transform(new DOMSource(fill(document)), new StreamResult(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public void cachedPerThread() throws Exception {
+        Document document = documentBuilder.newDocument();
+        transformer.transform(new DOMSource(fill(document)), new StreamResult(OutputStream.nullOutputStream()));
+    }
+
+    private static Document fill(Document document) {
+        Element root = document.createElement("Company");
+        Element name = document.createElement("companyName");
+        name.appendChild(document.createTextNode("Acme"));
+        root.appendChild(name);
+        document.appendChild(root);
+        return document;
+    }
+
+    private static void configure(Transformer transformer) {
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+    }
+}
@@ -0,0 +1,83 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rutz.Company;
+import org.rutz.ExcelMappingReader;
+import org.rutz.FieldAccessor;
+import org.rutz.MappingPlan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading every mapped value of a Company graph through the reflective accessor cache
+ * against the generated per-class extractors bound by {@link MappingPlan#withGeneratedExtractors(Class)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class ExtractorBenchmark {
+
+    @Param({"10"})
+    public int branches;
+
+    @Param({"10"})
+    public int membersPerTeam;
+
+    private MappingPlan reflectivePlan;
+    private MappingPlan generatedPlan;
+    private Company company;
+
+    @Setup
+    public void setUp() throws Exception {
+        reflectivePlan = MappingPlan.compile(ExcelMappingReader.readMappings("my.xlsx"));
+        generatedPlan = reflectivePlan.withGeneratedExtractors(Company.class);
+        company = CompanyGenerator.generate(branches, 1, membersPerTeam, 1);
+    }
+
+    @Benchmark
+    public void reflective(Blackhole blackhole) throws Exception {
+        readAll(reflectivePlan, company, blackhole);
+    }
+
+    @Benchmark
+    public void generated(Blackhole blackhole) throws Exception {
+        readAll(generatedPlan, company, blackhole);
+    }
+
+    /**
+     * Walks every group of the plan and reads every mapped field, the same accesses XmlBuilder performs.
+     */
+    private static void readAll(MappingPlan plan, Object root, Blackhole blackhole) throws Exception {
+        for (MappingPlan.GroupPlan group : plan.getGroups()) {
+            List<Object> items = Collections.singletonList(root);
+            for (int i = 0; i < group.getPath().size() && !items.isEmpty(); i++) {
+                List<Object> next = new ArrayList<>();
+                for (Object item : items) {
+                    FieldAccessor accessor = group.pathAccessorFor(i, item.getClass());
+                    Object value = accessor.isPresent() ? accessor.get(item) : null;
+                    if (value instanceof List<?>) {
+                        next.addAll((List<?>) value);
+                    } else if (value != null) {
+                        next.add(value);
+                    }
+                }
+                items = next;
+            }
+            for (Object item : items) {
+                for (MappingPlan.FieldPlan field : group.getFields()) {
+                    FieldAccessor accessor = field.accessorFor(item.getClass());
+                    if (accessor.isPresent()) {
+                        blackhole.consume(accessor.get(item));
+                    }
+                }
+            }
+        }
+    }
+}
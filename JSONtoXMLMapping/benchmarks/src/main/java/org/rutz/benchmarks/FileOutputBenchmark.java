@@ -0,0 +1,59 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rutz.Company;
+import org.rutz.ExcelMappingReader;
+import org.rutz.MappingPlan;
+import org.rutz.XmlBuilder;
+import org.rutz.XmlWriteOptions;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures streaming the largest Company shape to a file with different file buffer sizes, with and without writing
+ * to a temporary file and renaming it ({@code atomicFileWrite}). Add {@code -p fsync=true} to include forcing the file
+ * to disk, which mostly measures the disk.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class FileOutputBenchmark {
+
+    @Param({"65536", "1048576"})
+    public int fileBufferSize;
+
+    @Param({"false", "true"})
+    public boolean atomicFileWrite;
+
+    @Param({"false"})
+    public boolean fsync;
+
+    private MappingPlan plan;
+    private Company company;
+    private File outputFile;
+    private XmlWriteOptions options;
+
+    @Setup
+    public void setUp() throws Exception {
+        plan = MappingPlan.compile(ExcelMappingReader.readMappings("my.xlsx")).withGeneratedExtractors(Company.class);
+        company = CompanyGenerator.generate(50, 4, 25, 3);
+        options = XmlWriteOptions.builder().prettyPrint(false).fileBufferSize(fileBufferSize)
+                .atomicFileWrite(atomicFileWrite).fsync(fsync).build();
+        outputFile = File.createTempFile("file-output-benchmark", ".xml");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(outputFile.toPath());
+    }
+
+    @Benchmark
+    public void streamXmlToFile() throws Exception {
+        XmlBuilder.streamXml(plan, company, outputFile.getPath(), options);
+    }
+}
@@ -0,0 +1,63 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rutz.Company;
+import org.rutz.ExcelMappingReader;
+import org.rutz.FragmentCache;
+import org.rutz.MappingPlan;
+import org.rutz.XmlBuilder;
+import org.rutz.XmlWriteOptions;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures re-converting a polled response with a {@link FragmentCache}: {@code unchanged} converts the same graph
+ * again, {@code oneMemberChanged} renames one member before every conversion, so one member, its team and its branch
+ * are re-rendered. {@code uncached} is the same conversion without a cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class IncrementalBenchmark {
+
+    @Param({"10x2x10x2", "50x4x25x3"})
+    public String shape;
+
+    private MappingPlan plan;
+    private Company company;
+    private Company.Member member;
+    private long revision;
+    private final XmlWriteOptions uncachedOptions = XmlWriteOptions.compact();
+    private XmlWriteOptions cachedOptions;
+
+    @Setup
+    public void setUp() throws Exception {
+        plan = MappingPlan.compile(ExcelMappingReader.readMappings("my.xlsx")).withGeneratedExtractors(Company.class);
+        String[] dimensions = shape.split("x");
+        company = CompanyGenerator.generate(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]),
+                Integer.parseInt(dimensions[2]), Integer.parseInt(dimensions[3]));
+        member = company.getBranches().get(0).getTeams().get(0).getMembers().get(0);
+        cachedOptions = XmlWriteOptions.builder().prettyPrint(false).fragmentCache(new FragmentCache(64L << 20)).build();
+        XmlBuilder.streamXml(plan, company, OutputStream.nullOutputStream(), cachedOptions);
+    }
+
+    @Benchmark
+    public void uncached() throws Exception {
+        XmlBuilder.streamXml(plan, company, OutputStream.nullOutputStream(), uncachedOptions);
+    }
+
+    @Benchmark
+    public void unchanged() throws Exception {
+        XmlBuilder.streamXml(plan, company, OutputStream.nullOutputStream(), cachedOptions);
+    }
+
+    @Benchmark
+    public void oneMemberChanged() throws Exception {
+        member.setName("Member " + revision++);
+        XmlBuilder.streamXml(plan, company, OutputStream.nullOutputStream(), cachedOptions);
+    }
+}
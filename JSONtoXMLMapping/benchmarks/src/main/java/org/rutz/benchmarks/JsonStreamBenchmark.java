@@ -0,0 +1,61 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rutz.Company;
+import org.rutz.ExcelMappingReader;
+import org.rutz.JsonStreamConverter;
+import org.rutz.MappingPlan;
+import org.rutz.XmlBuilder;
+import org.rutz.XmlWriteOptions;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares converting a JSON response directly with {@link JsonStreamConverter} against converting the already
+ * deserialized POJOs with {@link XmlBuilder#streamXml}. The POJO side excludes deserialization, so it is a lower bound.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class JsonStreamBenchmark {
+
+    @Param({"1x1x1x1", "10x2x10x2", "50x4x25x3"})
+    public String shape;
+
+    @Param({"my.xlsx"})
+    public String mappingSheet;
+
+    private MappingPlan plan;
+    private JsonStreamConverter converter;
+    private Company company;
+    private byte[] json;
+    private final XmlWriteOptions compactOptions = XmlWriteOptions.compact();
+
+    @Setup
+    public void setUp() throws Exception {
+        plan = MappingPlan.compile(ExcelMappingReader.readMappings(mappingSheet)).withGeneratedExtractors(Company.class);
+        converter = new JsonStreamConverter(plan);
+        String[] dimensions = shape.split("x");
+        int[] size = new int[4];
+        for (int i = 0; i < size.length; i++) {
+            size[i] = Integer.parseInt(dimensions[i]);
+        }
+        company = CompanyGenerator.generate(size[0], size[1], size[2], size[3]);
+        json = CompanyGenerator.generateJson(size[0], size[1], size[2], size[3]);
+    }
+
+    @Benchmark
+    public void streamJsonCompact() throws Exception {
+        converter.convert(new ByteArrayInputStream(json), OutputStream.nullOutputStream(), compactOptions);
+    }
+
+    @Benchmark
+    public void streamPojoCompact() throws Exception {
+        XmlBuilder.streamXml(plan, company, OutputStream.nullOutputStream(), compactOptions);
+    }
+}
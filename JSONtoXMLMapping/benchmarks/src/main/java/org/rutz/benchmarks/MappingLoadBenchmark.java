@@ -0,0 +1,68 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rutz.ExcelMappingReader;
+import org.rutz.MappingArtifact;
+import org.rutz.MappingPlan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a mapping sheet: the workbook and streaming Excel readers, the compiled .xmap artifact,
+ * and compiling the loaded mappings into a plan. Sheet bytes are held in memory so only parsing is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class MappingLoadBenchmark {
+
+    @Param({"my.xlsx", "ur.xlsx"})
+    public String mappingSheet;
+
+    private byte[] workbook;
+    private byte[] artifact;
+    private List<ExcelMappingReader.XmlMapping> mappings;
+
+    @Setup
+    public void setUp() throws Exception {
+        try (InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(mappingSheet)) {
+            if (is == null) {
+                throw new IllegalArgumentException("Resource not found: " + mappingSheet);
+            }
+            workbook = is.readAllBytes();
+        }
+        mappings = ExcelMappingReader.readMappings(new ByteArrayInputStream(workbook), mappingSheet);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MappingArtifact.write(mappings, out);
+        artifact = out.toByteArray();
+    }
+
+    @Benchmark
+    public List<ExcelMappingReader.XmlMapping> workbookReader() throws Exception {
+        return ExcelMappingReader.readMappings(new ByteArrayInputStream(workbook), mappingSheet,
+                ExcelMappingReader.ReaderType.WORKBOOK);
+    }
+
+    @Benchmark
+    public List<ExcelMappingReader.XmlMapping> streamingReader() throws Exception {
+        return ExcelMappingReader.readMappings(new ByteArrayInputStream(workbook), mappingSheet,
+                ExcelMappingReader.ReaderType.STREAMING);
+    }
+
+    @Benchmark
+    public List<ExcelMappingReader.XmlMapping> artifact() throws Exception {
+        return MappingArtifact.read(new ByteArrayInputStream(artifact), mappingSheet);
+    }
+
+    @Benchmark
+    public MappingPlan compilePlan() {
+        return MappingPlan.compile(mappings);
+    }
+}
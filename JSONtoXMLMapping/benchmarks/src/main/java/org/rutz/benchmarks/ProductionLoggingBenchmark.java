@@ -0,0 +1,14 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * Runs the {@link XmlBuilderBenchmark} conversions with the framework's own logback.xml (INFO, async file appender)
+ * instead of the WARN-only benchmark configuration. With {@code -prof gc}, {@code gc.alloc.rate.norm} should match
+ * XmlBuilderBenchmark: logging must not allocate on the per-record path.
+ * <p>
+ * Writes logs/application.log in the working directory.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback.xml")
+public class ProductionLoggingBenchmark extends XmlBuilderBenchmark {
+}
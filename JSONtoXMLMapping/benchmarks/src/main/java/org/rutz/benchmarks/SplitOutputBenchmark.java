@@ -0,0 +1,73 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rutz.Company;
+import org.rutz.ExcelMappingReader;
+import org.rutz.MappingPlan;
+import org.rutz.XmlBuilder;
+import org.rutz.XmlSplitOptions;
+import org.rutz.XmlWriteOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures splitting the largest Company shape into part files of 5 branches each, written one after another or
+ * concurrently, against {@link XmlBuilder#streamXml} into a single file. Concurrent parts need several cores to pay off.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class SplitOutputBenchmark {
+
+    @Param({"false", "true"})
+    public boolean concurrent;
+
+    private MappingPlan plan;
+    private Company company;
+    private Path outputDirectory;
+    private String outputFile;
+    private XmlSplitOptions split;
+    private final XmlWriteOptions options = XmlWriteOptions.compact();
+
+    @Setup
+    public void setUp() throws Exception {
+        plan = MappingPlan.compile(ExcelMappingReader.readMappings("my.xlsx")).withGeneratedExtractors(Company.class);
+        company = CompanyGenerator.generate(50, 4, 25, 3);
+        split = XmlSplitOptions.builder().collection("branches").maxItems(5).concurrent(concurrent).build();
+        outputDirectory = Files.createTempDirectory("split-output-benchmark");
+        outputFile = new File(outputDirectory.toFile(), "company.xml").getPath();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(outputDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void singleFile() throws Exception {
+        XmlBuilder.streamXml(plan, company, outputFile, options);
+    }
+
+    @Benchmark
+    public void parts() throws Exception {
+        XmlBuilder.streamXmlParts(plan, company, outputFile, split, options);
+    }
+}
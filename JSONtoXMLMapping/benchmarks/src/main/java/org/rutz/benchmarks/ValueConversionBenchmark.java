@@ -0,0 +1,63 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rutz.ValueConverter;
+import org.rutz.ValueConverters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting single field values with the {@link ValueConverter} of each XML data type, in isolation from
+ * the walk. {@code convertInvalid} shows the cost of rejecting a value, which should be no higher than converting one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class ValueConversionBenchmark {
+
+    @Param({"string", "float", "int", "decimal(2)", "boolean", "date"})
+    public String xmlDataType;
+
+    private ValueConverter converter;
+    private Object value;
+    private final Object invalidValue = "n/a";
+    private final StringBuilder buffer = new StringBuilder(64);
+
+    @Setup
+    public void setUp() {
+        converter = ValueConverters.forType(xmlDataType);
+        switch (xmlDataType) {
+            case "float":
+            case "decimal(2)":
+                value = "1500.45";
+                break;
+            case "int":
+                value = "1500";
+                break;
+            case "boolean":
+                value = "true";
+                break;
+            case "date":
+                value = "2024-03-05";
+                break;
+            default:
+                value = "Michael Turner";
+        }
+    }
+
+    @Benchmark
+    public int convert() {
+        buffer.setLength(0);
+        converter.convert(value, buffer);
+        return buffer.length();
+    }
+
+    @Benchmark
+    public boolean convertInvalid() {
+        buffer.setLength(0);
+        return converter.convert(invalidValue, buffer);
+    }
+}
@@ -0,0 +1,93 @@
+package org.rutz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.rutz.Company;
+import org.rutz.ExcelMappingReader;
+import org.rutz.InMemoryConversionMetrics;
+import org.rutz.MappingPlan;
+import org.rutz.XmlBuilder;
+import org.rutz.XmlWriteOptions;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting Company graphs of increasing size, in DOM mode ({@link XmlBuilder#buildXml}) and streaming mode
+ * ({@link XmlBuilder#streamXml}). Run with {@code -prof gc} to see the allocation rate per conversion.
+ * <p>
+ * {@code backend} only affects the streaming modes.
+ * <p>
+ * {@code shape} is branches x teams per branch x members per team x tasks (and campaigns) per member.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class XmlBuilderBenchmark {
+
+    @Param({"1x1x1x1", "10x2x10x2", "50x4x25x3"})
+    public String shape;
+
+    @Param({"my.xlsx"})
+    public String mappingSheet;
+
+    /**
+     * Report to an {@link InMemoryConversionMetrics}; run with {@code -p metrics=true,false} to see the overhead.
+     */
+    @Param({"false"})
+    public boolean metrics;
+
+    /**
+     * The writer of the streaming modes.
+     */
+    @Param({"UTF8", "STAX"})
+    public XmlWriteOptions.Backend backend;
+
+    private MappingPlan plan;
+    private Company company;
+    private File outputFile;
+    private XmlWriteOptions prettyOptions;
+    private XmlWriteOptions compactOptions;
+
+    @Setup
+    public void setUp() throws Exception {
+        XmlBuilder.setMetrics(metrics ? new InMemoryConversionMetrics() : null);
+        plan = MappingPlan.compile(ExcelMappingReader.readMappings(mappingSheet)).withGeneratedExtractors(Company.class);
+        String[] dimensions = shape.split("x");
+        company = CompanyGenerator.generate(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]),
+                Integer.parseInt(dimensions[2]), Integer.parseInt(dimensions[3]));
+        prettyOptions = XmlWriteOptions.builder().backend(backend).build();
+        compactOptions = XmlWriteOptions.builder().prettyPrint(false).backend(backend).build();
+        outputFile = File.createTempFile("xml-builder-benchmark", ".xml");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        XmlBuilder.setMetrics(null);
+        Files.deleteIfExists(outputFile.toPath());
+    }
+
+    @Benchmark
+    public void buildXml() throws Exception {
+        XmlBuilder.buildXml(plan, company, outputFile.getPath());
+    }
+
+    @Benchmark
+    public void streamXmlPretty() throws Exception {
+        XmlBuilder.streamXml(plan, company, OutputStream.nullOutputStream(), prettyOptions);
+    }
+
+    @Benchmark
+    public void streamXmlCompact() throws Exception {
+        XmlBuilder.streamXml(plan, company, OutputStream.nullOutputStream(), compactOptions);
+    }
+
+    @Benchmark
+    public void streamXmlToFile() throws Exception {
+        XmlBuilder.streamXml(plan, company, outputFile.getPath(), prettyOptions);
+    }
+}
@@ -0,0 +1,17 @@
+package org.rutz;
+
+/**
+ * A generated, class-specific reader for the getter-backed fields of one bean class.
+ * Implementations are produced at runtime by {@link BeanExtractors}; each slot is a direct getter call.
+ */
+public interface BeanExtractor {
+
+    /**
+     * Reads the property in the given slot.
+     *
+     * @param bean The bean; must be an instance of the class the extractor was generated for.
+     * @param slot The slot index assigned to the property when the extractor was generated.
+     * @return The property value, boxed if the getter returns a primitive.
+     */
+    Object get(Object bean, int slot);
+}
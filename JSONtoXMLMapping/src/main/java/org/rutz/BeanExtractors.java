@@ -0,0 +1,263 @@
+package org.rutz;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * BeanExtractors generates a {@link BeanExtractor} class per bean class at runtime and caches it for the lifetime
+ * of the class.
+ * <p>
+ * The generated class has one slot per getter-backed field and reads it with a direct {@code invokevirtual}
+ * of the getter, so extraction involves no reflection and no {@link java.lang.invoke.MethodHandle} dispatch.
+ * Classes that cannot be generated (JDK classes, classes without getters, classes whose loader cannot see
+ * {@link BeanExtractor}) are cached as unsupported and callers fall back to {@link FieldAccessors}.
+ */
+public final class BeanExtractors {
+
+    private static final Logger logger = LoggerFactory.getLogger(BeanExtractors.class);
+
+    private static final String EXTRACTOR_SUFFIX = "$$XmlExtractor";
+
+    private static final ClassValue<Generated> CACHE = new ClassValue<Generated>() {
+        @Override
+        protected Generated computeValue(Class<?> type) {
+            return generate(type);
+        }
+    };
+
+    private BeanExtractors() {
+    }
+
+    /**
+     * Returns an accessor that reads the given field through the generated extractor of the class.
+     *
+     * @param type      The class to read from.
+     * @param fieldName The field name.
+     * @return The generated accessor, or null if the class or field is not supported; use {@link FieldAccessors} then.
+     */
+    public static FieldAccessor forField(Class<?> type, String fieldName) {
+        Generated generated = CACHE.get(type);
+        if (generated.extractor == null) {
+            return null;
+        }
+        Integer slot = generated.slots.get(fieldName);
+        return slot == null ? null : new GeneratedAccessor(generated.extractor, slot, type.getName() + "." + fieldName);
+    }
+
+    /**
+     * Generates the extractor of a class. Package-private so tests can repeat the computation of {@link #CACHE}, as
+     * concurrent first calls do.
+     */
+    static Generated generate(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.isInterface() || type.getName().startsWith("java.")) {
+            return Generated.UNSUPPORTED;
+        }
+
+        // One slot per non-static field that has a matching getter; the first declaration of a name wins
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        List<Method> getters = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || slots.containsKey(field.getName())) {
+                    continue;
+                }
+                Method getter = FieldAccessors.findGetter(type, field);
+                if (getter != null) {
+                    slots.put(field.getName(), getters.size());
+                    getters.add(getter);
+                }
+            }
+        }
+        if (getters.isEmpty()) {
+            logger.debug("Class '{}' has no getters. Using reflective access.", type.getName());
+            return Generated.UNSUPPORTED;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            Class<?> extractorClass = defineExtractor(lookup, type, getters);
+            BeanExtractor extractor = (BeanExtractor) extractorClass.getDeclaredConstructor().newInstance();
+            logger.info("Generated extractor '{}' with {} slots.", extractorClass.getName(), getters.size());
+            return new Generated(extractor, slots);
+        } catch (Exception | LinkageError e) {
+            logger.warn("Could not generate extractor for class '{}'. Using reflective access: {}", type.getName(), e.toString());
+            return Generated.UNSUPPORTED;
+        }
+    }
+
+    /**
+     * Defines the extractor class in the bean's package. A {@link ClassValue} may compute the same value on several
+     * threads at once, and only the first can define the class; the others use the class it defined, which has the
+     * same slots.
+     */
+    private static Class<?> defineExtractor(MethodHandles.Lookup lookup, Class<?> type, List<Method> getters)
+            throws ReflectiveOperationException {
+        try {
+            return lookup.defineClass(writeExtractorClass(type, getters));
+        } catch (LinkageError e) {
+            try {
+                return lookup.findClass(type.getName() + EXTRACTOR_SUFFIX);
+            } catch (ClassNotFoundException notDefined) {
+                e.addSuppressed(notDefined);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writes the bytecode of:
+     * <pre>
+     * public final class Bean$$XmlExtractor implements BeanExtractor {
+     *     public Object get(Object bean, int slot) {
+     *         Bean b = (Bean) bean;
+     *         switch (slot) {
+     *             case 0: return b.getFirst();
+     *             ...
+     *             default: throw new IllegalArgumentException("Unknown slot");
+     *         }
+     *     }
+     * }
+     * </pre>
+     */
+    private static byte[] writeExtractorClass(Class<?> type, List<Method> getters) {
+        String beanName = Type.getInternalName(type);
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // Frames only merge identical local types; avoid loading bean classes through ASM's class loader
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(Opcodes.V11, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+                beanName + EXTRACTOR_SUFFIX, null, "java/lang/Object",
+                new String[]{Type.getInternalName(BeanExtractor.class)});
+
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor get = cw.visitMethod(Opcodes.ACC_PUBLIC, "get", "(Ljava/lang/Object;I)Ljava/lang/Object;", null, null);
+        get.visitCode();
+        get.visitVarInsn(Opcodes.ALOAD, 1);
+        get.visitTypeInsn(Opcodes.CHECKCAST, beanName);
+        get.visitVarInsn(Opcodes.ASTORE, 3);
+
+        Label unknownSlot = new Label();
+        Label[] cases = new Label[getters.size()];
+        for (int i = 0; i < cases.length; i++) {
+            cases[i] = new Label();
+        }
+        get.visitVarInsn(Opcodes.ILOAD, 2);
+        get.visitTableSwitchInsn(0, cases.length - 1, unknownSlot, cases);
+
+        for (int i = 0; i < cases.length; i++) {
+            Method getter = getters.get(i);
+            get.visitLabel(cases[i]);
+            get.visitVarInsn(Opcodes.ALOAD, 3);
+            get.visitMethodInsn(Opcodes.INVOKEVIRTUAL, beanName, getter.getName(), Type.getMethodDescriptor(getter), false);
+            boxIfPrimitive(get, Type.getReturnType(getter));
+            get.visitInsn(Opcodes.ARETURN);
+        }
+
+        get.visitLabel(unknownSlot);
+        get.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalArgumentException");
+        get.visitInsn(Opcodes.DUP);
+        get.visitLdcInsn("Unknown slot");
+        get.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V", false);
+        get.visitInsn(Opcodes.ATHROW);
+        get.visitMaxs(0, 0);
+        get.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void boxIfPrimitive(MethodVisitor mv, Type type) {
+        String wrapper;
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                wrapper = "java/lang/Boolean";
+                break;
+            case Type.CHAR:
+                wrapper = "java/lang/Character";
+                break;
+            case Type.BYTE:
+                wrapper = "java/lang/Byte";
+                break;
+            case Type.SHORT:
+                wrapper = "java/lang/Short";
+                break;
+            case Type.INT:
+                wrapper = "java/lang/Integer";
+                break;
+            case Type.FLOAT:
+                wrapper = "java/lang/Float";
+                break;
+            case Type.LONG:
+                wrapper = "java/lang/Long";
+                break;
+            case Type.DOUBLE:
+                wrapper = "java/lang/Double";
+                break;
+            default:
+                return;
+        }
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, wrapper, "valueOf",
+                "(" + type.getDescriptor() + ")L" + wrapper + ";", false);
+    }
+
+    /**
+     * The generated extractor of a class and its slot assignment, or {@link #UNSUPPORTED}.
+     */
+    static final class Generated {
+        static final Generated UNSUPPORTED = new Generated(null, Collections.emptyMap());
+
+        final BeanExtractor extractor;
+        final Map<String, Integer> slots;
+
+        private Generated(BeanExtractor extractor, Map<String, Integer> slots) {
+            this.extractor = extractor;
+            this.slots = slots;
+        }
+    }
+
+    /**
+     * FieldAccessor reading one slot of a generated extractor.
+     */
+    private static final class GeneratedAccessor implements FieldAccessor {
+        private final BeanExtractor extractor;
+        private final int slot;
+        private final String description;
+
+        private GeneratedAccessor(BeanExtractor extractor, int slot, String description) {
+            this.extractor = extractor;
+            this.slot = slot;
+            this.description = description;
+        }
+
+        @Override
+        public Object get(Object target) {
+            return extractor.get(target, slot);
+        }
+
+        @Override
+        public String toString() {
+            return "GeneratedAccessor{" + description + '}';
+        }
+    }
+}
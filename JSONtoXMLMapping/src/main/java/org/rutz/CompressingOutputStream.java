@@ -0,0 +1,339 @@
+package org.rutz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the bytes written to it as gzip or raw deflate, see {@link XmlWriteOptions#getCompression()}.
+ * <p>
+ * Sequentially, one Deflater compresses everything, as {@link java.util.zip.GZIPOutputStream} would. With
+ * {@link XmlWriteOptions#isParallelCompression()} the input is cut into blocks of
+ * {@link XmlWriteOptions#getCompressionBlockSize()} that are compressed on a ForkJoinPool, like pigz does, and written
+ * in order. For gzip every block becomes a complete gzip member; gzip readers, including
+ * {@link java.util.zip.GZIPInputStream}, read concatenated members as one file. Raw deflate has no members, so every
+ * block is primed with the last 32 KB of the block before it and ends with a sync flush, except the last, which
+ * finishes the stream; the blocks then form a single deflate stream.
+ * <p>
+ * {@link #finish()} completes the compressed data and flushes, but does not close, the stream below; {@link #abort()}
+ * releases the compressor of output that is discarded. Not thread-safe.
+ */
+final class CompressingOutputStream extends OutputStream {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    // The window of deflate: the most a block can refer back into the one before it
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final OutputStream out;
+    private final boolean gzip;
+    private final int level;
+    private final ForkJoinPool pool;
+    private final byte[] single = new byte[1];
+
+    // Sequential mode
+    private Deflater deflater;
+    private CRC32 crc;
+    private byte[] deflated;
+
+    // Parallel mode
+    private byte[] block;
+    private int count;
+    private byte[] dictionary;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private int window;
+    private int blocks;
+
+    private boolean finished;
+
+    private CompressingOutputStream(OutputStream out, XmlWriteOptions options) throws IOException {
+        int compressionLevel = options.getCompressionLevel();
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("compressionLevel must be between -1 and 9, was " + compressionLevel);
+        }
+        // A block has to hold the window the next block is primed with
+        if (options.isParallelCompression() && options.getCompressionBlockSize() < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("compressionBlockSize must be at least " + DICTIONARY_SIZE + ", was "
+                    + options.getCompressionBlockSize());
+        }
+        this.out = out;
+        this.gzip = options.getCompression() == XmlWriteOptions.Compression.GZIP;
+        this.level = options.getCompressionLevel();
+        if (options.isParallelCompression()) {
+            this.pool = options.getForkJoinPool() != null ? options.getForkJoinPool() : ForkJoinPool.commonPool();
+            this.block = new byte[options.getCompressionBlockSize()];
+            this.window = pool.getParallelism() * 2;
+        } else {
+            this.pool = null;
+            this.deflater = new Deflater(level, true);
+            this.deflated = new byte[64 * 1024];
+            if (gzip) {
+                this.crc = new CRC32();
+                out.write(GZIP_HEADER);
+            }
+        }
+    }
+
+    /**
+     * @return {@code out} wrapped in the compression selected by the options, or {@code out} itself if there is none.
+     */
+    static OutputStream wrap(OutputStream out, XmlWriteOptions options) throws IOException {
+        return options.getCompression() == XmlWriteOptions.Compression.NONE ? out : new CompressingOutputStream(out, options);
+    }
+
+    /**
+     * Finishes {@code out} if it is a CompressingOutputStream; other streams are left alone.
+     */
+    static void finish(OutputStream out) throws IOException {
+        if (out instanceof CompressingOutputStream) {
+            ((CompressingOutputStream) out).finish();
+        }
+    }
+
+    /**
+     * Aborts {@code out} if it is a CompressingOutputStream; other streams are left alone.
+     */
+    static void abort(OutputStream out) {
+        if (out instanceof CompressingOutputStream) {
+            ((CompressingOutputStream) out).abort();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Compressed stream already finished");
+        }
+        if (pool == null) {
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                writeDeflated(Deflater.NO_FLUSH);
+            }
+            return;
+        }
+        while (len > 0) {
+            int chunk = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+            if (count == block.length) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks that are done, without compressing a partial one: output flushes at every fragment, and small
+     * blocks would compress poorly.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pending.isEmpty() && pending.peek().isDone()) {
+            out.write(awaitBlock(pending.poll()));
+        }
+        out.flush();
+    }
+
+    /**
+     * Compresses what is left, writes the gzip trailer if any and flushes the stream below. Further writes fail.
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (pool == null) {
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    writeDeflated(Deflater.NO_FLUSH);
+                }
+                if (crc != null) {
+                    writeGzipTrailer(out, crc.getValue(), deflater.getBytesRead());
+                }
+            } finally {
+                deflater.end();
+            }
+        } else {
+            try {
+                submitBlock(true);
+                while (!pending.isEmpty()) {
+                    out.write(awaitBlock(pending.poll()));
+                }
+            } finally {
+                for (Future<byte[]> future : pending) {
+                    future.cancel(true);
+                }
+                pending.clear();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Releases the Deflater and cancels the blocks still compressing, without writing anything more, for output that
+     * is being discarded. Does nothing once finished; further writes fail.
+     */
+    void abort() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (pool == null) {
+            deflater.end();
+        } else {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * Finishes, and releases the Deflater, but does not close the stream below.
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    private void writeDeflated(int flush) throws IOException {
+        int length = deflater.deflate(deflated, 0, deflated.length, flush);
+        if (length > 0) {
+            out.write(deflated, 0, length);
+        }
+    }
+
+    /**
+     * Hands the current block to the pool. An empty block is only submitted as the last, when raw deflate has to be
+     * finished or gzip output has no member yet.
+     */
+    private void submitBlock(boolean last) throws IOException {
+        if (count == 0 && !(last && (!gzip || blocks == 0))) {
+            return;
+        }
+        blocks++;
+        byte[] input = block;
+        int length = count;
+        byte[] previous = dictionary;
+        if (!gzip) {
+            // Copied now: the block is handed over, and a short block may not hold a full window
+            dictionary = nextDictionary(previous, input, length);
+        }
+        int compressionLevel = level;
+        boolean gzipMember = gzip;
+        pending.add(pool.submit(() -> gzipMember ? compressMember(input, length, compressionLevel)
+                : compressBlock(input, length, previous, last, compressionLevel)));
+        if (!last) {
+            block = new byte[block.length];
+            count = 0;
+        }
+        while (pending.size() > window) {
+            out.write(awaitBlock(pending.poll()));
+        }
+    }
+
+    private static byte[] nextDictionary(byte[] previous, byte[] input, int length) {
+        if (length >= DICTIONARY_SIZE) {
+            return Arrays.copyOfRange(input, length - DICTIONARY_SIZE, length);
+        }
+        byte[] previousPart = previous != null ? previous : new byte[0];
+        int kept = Math.min(previousPart.length, DICTIONARY_SIZE - length);
+        byte[] next = new byte[kept + length];
+        System.arraycopy(previousPart, previousPart.length - kept, next, 0, kept);
+        System.arraycopy(input, 0, next, kept, length);
+        return next;
+    }
+
+    private static byte[] awaitBlock(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress a block: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Compresses a block into a complete gzip member.
+     */
+    private static byte[] compressMember(byte[] input, int length, int level) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(input, 0, length);
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + 64);
+        member.write(GZIP_HEADER);
+        deflate(member, input, length, null, true, level);
+        writeGzipTrailer(member, crc.getValue(), length);
+        return member.toByteArray();
+    }
+
+    /**
+     * Compresses a block of a raw deflate stream: primed with the end of the previous block, and ending on a byte
+     * boundary (sync flush) unless it is the last.
+     */
+    private static byte[] compressBlock(byte[] input, int length, byte[] dictionary, boolean last, int level) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+        deflate(compressed, input, length, dictionary, last, level);
+        return compressed.toByteArray();
+    }
+
+    private static void deflate(ByteArrayOutputStream target, byte[] input, int length, byte[] dictionary,
+                                boolean finish, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input, 0, length);
+            byte[] buffer = new byte[64 * 1024];
+            if (finish) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    target.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // A sync flush is complete once it leaves room in the buffer
+                int written;
+                do {
+                    written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    target.write(buffer, 0, written);
+                } while (written == buffer.length || !deflater.needsInput());
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeGzipTrailer(OutputStream target, long crc, long size) throws IOException {
+        byte[] trailer = new byte[8];
+        writeIntLE(trailer, 0, (int) crc);
+        writeIntLE(trailer, 4, (int) size);
+        target.write(trailer);
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+}
@@ -0,0 +1,78 @@
+package org.rutz;
+
+/**
+ * Receives timings and counters from conversions. Install an implementation with
+ * {@link XmlBuilder#setMetrics(ConversionMetrics)}; {@link InMemoryConversionMetrics} keeps them for inspection.
+ * <p>
+ * Conversions accumulate their numbers locally and report them once per document (or per parallel chunk), so
+ * implementations are called a handful of times per conversion, possibly from several threads at once.
+ * With the default {@link #NOOP} no clocks are read and nothing is counted.
+ */
+public interface ConversionMetrics {
+
+    /**
+     * The phases a conversion's time is split into.
+     */
+    enum Phase {
+        /**
+         * Reading a mapping sheet or artifact.
+         */
+        LOAD,
+        /**
+         * Compiling mappings into a {@link MappingPlan}.
+         */
+        PLAN,
+        /**
+         * Reading values from the API response objects.
+         */
+        EXTRACT,
+        /**
+         * Converting field values to their XML data type.
+         */
+        CONVERT,
+        /**
+         * Writing elements to the output, measured as the rest of the conversion's time.
+         */
+        SERIALIZE
+    }
+
+    /**
+     * Discards everything; the default.
+     */
+    ConversionMetrics NOOP = new ConversionMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordPhase(Phase phase, long nanos) {
+        }
+
+        @Override
+        public void recordGroup(String group, long elements, long skippedNulls, long conversionFailures) {
+        }
+    };
+
+    /**
+     * @return false if nothing should be measured for this instance; conversions then skip all bookkeeping.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Records time spent in a phase by one document, chunk or mapping load.
+     */
+    void recordPhase(Phase phase, long nanos);
+
+    /**
+     * Records what one document or chunk wrote for a group.
+     *
+     * @param group              The group name, as in the mapping sheet.
+     * @param elements           Items written as elements.
+     * @param skippedNulls       Fields or list entries skipped because they were null.
+     * @param conversionFailures Fields skipped because their value could not be converted to the XML data type.
+     */
+    void recordGroup(String group, long elements, long skippedNulls, long conversionFailures);
+}
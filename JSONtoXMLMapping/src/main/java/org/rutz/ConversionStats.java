@@ -0,0 +1,66 @@
+package org.rutz;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Counters and phase timings of one document or parallel chunk, reported to {@link ConversionMetrics} when it ends.
+ * Owned by a single thread, so the hot path only does plain field updates.
+ */
+final class ConversionStats {
+
+    static final int ELEMENTS = 0;
+    static final int SKIPPED_NULLS = 1;
+    static final int CONVERSION_FAILURES = 2;
+
+    private final long startNanos = System.nanoTime();
+    long extractNanos;
+    long convertNanos;
+    // Time spent blocked on other threads, e.g. waiting for parallel chunks; not attributed to any phase
+    long waitNanos;
+    private final Map<MappingPlan.GroupPlan, long[]> groups = new IdentityHashMap<>();
+
+    /**
+     * @return A fresh instance if the metrics are enabled, otherwise null, which disables all bookkeeping.
+     */
+    static ConversionStats start(ConversionMetrics metrics) {
+        return metrics.isEnabled() ? new ConversionStats() : null;
+    }
+
+    /**
+     * @return The counters of the group, indexed by {@link #ELEMENTS}, {@link #SKIPPED_NULLS} and
+     * {@link #CONVERSION_FAILURES}.
+     */
+    long[] group(MappingPlan.GroupPlan group) {
+        return groups.computeIfAbsent(group, g -> new long[3]);
+    }
+
+    /**
+     * Adds the group counters of {@code other}, e.g. of an item written from the {@link FragmentCache}. Phase times are
+     * not added; they are spent by whoever owns {@code other}.
+     */
+    void addCounters(ConversionStats other) {
+        for (Map.Entry<MappingPlan.GroupPlan, long[]> entry : other.groups.entrySet()) {
+            long[] counts = group(entry.getKey());
+            long[] added = entry.getValue();
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += added[i];
+            }
+        }
+    }
+
+    /**
+     * Reports the phases and group counters. SERIALIZE is the time since {@link #start} not spent extracting,
+     * converting or waiting, which saves reading the clock around every output call.
+     */
+    void reportTo(ConversionMetrics metrics) {
+        long serializeNanos = System.nanoTime() - startNanos - extractNanos - convertNanos - waitNanos;
+        metrics.recordPhase(ConversionMetrics.Phase.EXTRACT, extractNanos);
+        metrics.recordPhase(ConversionMetrics.Phase.CONVERT, convertNanos);
+        metrics.recordPhase(ConversionMetrics.Phase.SERIALIZE, Math.max(0L, serializeNanos));
+        for (Map.Entry<MappingPlan.GroupPlan, long[]> entry : groups.entrySet()) {
+            long[] counts = entry.getValue();
+            metrics.recordGroup(entry.getKey().getName(), counts[ELEMENTS], counts[SKIPPED_NULLS], counts[CONVERSION_FAILURES]);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.rutz;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * XmlOutput that builds an in-memory {@link Document}, for callers that need a DOM.
+ */
+public class DomXmlOutput implements XmlOutput {
+
+    private final Document document;
+    private final Deque<Node> openNodes = new ArrayDeque<>();
+    private final StringBuilder textBuffer = new StringBuilder(64);
+
+    /**
+     * @param document An empty document to build into.
+     */
+    public DomXmlOutput(Document document) {
+        this.document = document;
+        this.openNodes.push(document);
+    }
+
+    @Override
+    public void startDocument() {
+        // The document node already exists
+    }
+
+    @Override
+    public void startElement(String name) {
+        Element element = document.createElement(name);
+        openNodes.peek().appendChild(element);
+        openNodes.push(element);
+    }
+
+    @Override
+    public void text(String value) {
+        openNodes.peek().appendChild(document.createTextNode(value));
+    }
+
+    @Override
+    public StringBuilder textBuffer() {
+        textBuffer.setLength(0);
+        return textBuffer;
+    }
+
+    @Override
+    public void endElement() {
+        openNodes.pop();
+    }
+
+    @Override
+    public void endDocument() {
+        // Nothing to flush
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+}
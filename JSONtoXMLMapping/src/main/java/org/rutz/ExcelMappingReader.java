@@ -5,7 +5,11 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,6 +17,21 @@ public class ExcelMappingReader {
 
     private static final Logger logger = LoggerFactory.getLogger(ExcelMappingReader.class);
 
+    /**
+     * How a mapping workbook is read.
+     */
+    public enum ReaderType {
+        /**
+         * Loads the whole workbook with {@link XSSFWorkbook} and evaluates formula cells.
+         */
+        WORKBOOK,
+        /**
+         * Streams the first sheet with POI's SAX event API in bounded memory; formula cells yield their cached results.
+         * Preferable for large mapping sheets.
+         */
+        STREAMING
+    }
+
     public static class XmlMapping {
         private String group;
         private String apiFieldName;
@@ -70,21 +89,118 @@ public class ExcelMappingReader {
      * @throws Exception If an error occurs during reading.
      */
     public static List<XmlMapping> readMappings(String excelFileName) throws Exception {
+        return readMappings(excelFileName, ReaderType.WORKBOOK);
+    }
+
+    /**
+     * Reads the Excel file from the resource folder with the given reader.
+     *
+     * @param excelFileName Name of the Excel file (e.g., "field_mappings.xlsx").
+     * @param readerType    How the workbook is read.
+     * @return List of XmlMapping.
+     * @throws Exception If an error occurs during reading.
+     */
+    public static List<XmlMapping> readMappings(String excelFileName, ReaderType readerType) throws Exception {
         logger.info("Starting to read Excel mappings from resource: {}", excelFileName);
-        List<XmlMapping> mappings = new ArrayList<>();
 
         // Use ClassLoader to load the resource as a stream
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        URL url = classLoader.getResource(excelFileName);
+        if (readerType == ReaderType.STREAMING && url != null && "file".equals(url.getProtocol())) {
+            try {
+                return readMappings(new File(url.toURI()), readerType);
+            } catch (URISyntaxException e) {
+                logger.debug("Cannot open resource '{}' as a file, reading it as a stream: {}", excelFileName, e.getMessage());
+            }
+        }
         try (InputStream is = classLoader.getResourceAsStream(excelFileName)) {
             if (is == null) {
                 String errorMsg = "Resource not found: " + excelFileName;
                 logger.error(errorMsg);
                 throw new IllegalArgumentException(errorMsg);
             }
+            return readMappings(is, excelFileName, readerType);
+        }
+    }
 
-            Workbook workbook = new XSSFWorkbook(is);
+    /**
+     * Reads mappings from an Excel workbook file. The streaming reader opens the file read-only and reads only the parts
+     * it parses; the workbook reader loads it fully, as from a stream.
+     *
+     * @param file       The workbook file.
+     * @param readerType How the workbook is read.
+     * @return List of XmlMapping.
+     * @throws Exception If an error occurs during reading.
+     */
+    public static List<XmlMapping> readMappings(File file, ReaderType readerType) throws Exception {
+        if (readerType != ReaderType.STREAMING) {
+            try (InputStream is = new FileInputStream(file)) {
+                return readMappings(is, file.getPath(), readerType);
+            }
+        }
+        ConversionMetrics metrics = XmlBuilder.getMetrics();
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+        List<XmlMapping> mappings;
+        try {
+            mappings = StreamingExcelMappingReader.readMappings(file, file.getPath());
+        } catch (Exception e) {
+            logger.error("Error while streaming Excel mappings from '{}': {}", file.getPath(), e.getMessage(), e);
+            throw e;
+        }
+        if (metrics.isEnabled()) {
+            metrics.recordPhase(ConversionMetrics.Phase.LOAD, System.nanoTime() - start);
+        }
+        return mappings;
+    }
+
+    /**
+     * Reads mappings from an Excel workbook stream, e.g. bytes already held in memory. For a file on disk, prefer
+     * {@link #readMappings(File, ReaderType)}, which the streaming reader does not have to buffer in memory.
+     *
+     * @param is         The workbook content; it is read fully but not closed.
+     * @param sourceName Name of the source, used in log messages.
+     * @return List of XmlMapping.
+     * @throws Exception If an error occurs during reading.
+     */
+    public static List<XmlMapping> readMappings(InputStream is, String sourceName) throws Exception {
+        return readMappings(is, sourceName, ReaderType.WORKBOOK);
+    }
+
+    /**
+     * Reads mappings from an Excel workbook stream with the given reader.
+     *
+     * @param is         The workbook content; it is read fully but not closed.
+     * @param sourceName Name of the source, used in log messages.
+     * @param readerType How the workbook is read.
+     * @return List of XmlMapping.
+     * @throws Exception If an error occurs during reading.
+     */
+    public static List<XmlMapping> readMappings(InputStream is, String sourceName, ReaderType readerType) throws Exception {
+        ConversionMetrics metrics = XmlBuilder.getMetrics();
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+        List<XmlMapping> mappings = readMappingsWith(is, sourceName, readerType);
+        if (metrics.isEnabled()) {
+            metrics.recordPhase(ConversionMetrics.Phase.LOAD, System.nanoTime() - start);
+        }
+        return mappings;
+    }
+
+    private static List<XmlMapping> readMappingsWith(InputStream is, String sourceName, ReaderType readerType) throws Exception {
+        if (readerType == ReaderType.STREAMING) {
+            try {
+                return StreamingExcelMappingReader.readMappings(is, sourceName);
+            } catch (Exception e) {
+                logger.error("Error while streaming Excel mappings from '{}': {}", sourceName, e.getMessage(), e);
+                throw e;
+            }
+        }
+
+        List<XmlMapping> mappings = new ArrayList<>();
+        try (Workbook workbook = new XSSFWorkbook(is)) {
             Sheet sheet = workbook.getSheetAt(0); // Assuming data is in the first sheet
-            logger.debug("Excel sheet '{}' loaded successfully.", sheet.getSheetName());
+            // One evaluator per workbook; creating one per formula cell rebuilds its caches every time
+            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+            logger.debug("Excel sheet '{}' of '{}' loaded successfully.", sheet.getSheetName(), sourceName);
 
             // Iterate over rows, skipping the header
             for (int i = 1; i <= sheet.getLastRowNum(); i++) { // Start from row 1 to skip header
@@ -94,11 +210,11 @@ public class ExcelMappingReader {
                     continue; // Skip empty rows
                 }
 
-                String group = getCellValueAsString(row.getCell(0));
-                String apiFieldName = getCellValueAsString(row.getCell(1));
-                String apiDataType = getCellValueAsString(row.getCell(2));
-                String xmlDataType = getCellValueAsString(row.getCell(3));
-                String xmlPath = getCellValueAsString(row.getCell(4));
+                String group = getCellValueAsString(row.getCell(0), evaluator);
+                String apiFieldName = getCellValueAsString(row.getCell(1), evaluator);
+                String apiDataType = getCellValueAsString(row.getCell(2), evaluator);
+                String xmlDataType = getCellValueAsString(row.getCell(3), evaluator);
+                String xmlPath = getCellValueAsString(row.getCell(4), evaluator);
 
                 if (apiFieldName.isEmpty()) {
                     logger.warn("Row {} has an empty API Field Name. Skipping.", i + 1);
@@ -110,10 +226,9 @@ public class ExcelMappingReader {
                 logger.debug("Added mapping: {}", mapping);
             }
 
-            workbook.close();
-            logger.info("Excel mappings loaded successfully. Total mappings: {}", mappings.size());
+            logger.info("Excel mappings loaded successfully from '{}'. Total mappings: {}", sourceName, mappings.size());
         } catch (Exception e) {
-            logger.error("Error while reading Excel mappings: {}", e.getMessage(), e);
+            logger.error("Error while reading Excel mappings from '{}': {}", sourceName, e.getMessage(), e);
             throw e;
         }
 
@@ -123,10 +238,11 @@ public class ExcelMappingReader {
     /**
      * Helper method to get cell value as String.
      *
-     * @param cell The cell to read.
+     * @param cell      The cell to read.
+     * @param evaluator The workbook's formula evaluator.
      * @return String representation of the cell value.
      */
-    private static String getCellValueAsString(Cell cell) {
+    private static String getCellValueAsString(Cell cell, FormulaEvaluator evaluator) {
         if (cell == null) return "";
         switch (cell.getCellType()) {
             case STRING:
@@ -145,7 +261,6 @@ public class ExcelMappingReader {
                 return String.valueOf(cell.getBooleanCellValue());
             case FORMULA:
                 // Evaluate the formula and return the result as String
-                FormulaEvaluator evaluator = cell.getSheet().getWorkbook().getCreationHelper().createFormulaEvaluator();
                 CellValue cellValue = evaluator.evaluate(cell);
                 switch (cellValue.getCellType()) {
                     case BOOLEAN:
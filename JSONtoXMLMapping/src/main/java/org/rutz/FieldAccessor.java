@@ -0,0 +1,44 @@
+package org.rutz;
+
+/**
+ * Reads one named field from objects of one class.
+ * Instances are resolved and cached by {@link FieldAccessors}.
+ */
+public interface FieldAccessor {
+
+    /**
+     * Accessor returned when the field does not exist in the class or any of its superclasses.
+     */
+    FieldAccessor MISSING = new FieldAccessor() {
+        @Override
+        public Object get(Object target) throws NoSuchFieldException {
+            throw new NoSuchFieldException("Field not found in " + target.getClass().getName());
+        }
+
+        @Override
+        public boolean isPresent() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "FieldAccessor.MISSING";
+        }
+    };
+
+    /**
+     * Reads the field value from the given object.
+     *
+     * @param target The object to read from; must be an instance of the class the accessor was resolved for.
+     * @return The field value, possibly null.
+     * @throws Exception if the value cannot be read.
+     */
+    Object get(Object target) throws Exception;
+
+    /**
+     * @return false if the field does not exist, in which case {@link #get(Object)} must not be called.
+     */
+    default boolean isPresent() {
+        return true;
+    }
+}
@@ -0,0 +1,146 @@
+package org.rutz;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * FieldAccessors resolves {@link FieldAccessor}s by (class, field name) and caches them for the lifetime of the class.
+ * <p>
+ * A field is resolved once: its getter (as generated by Lombok's {@code @Data}) is preferred, otherwise the field
+ * itself is read. Either way the result is a {@link MethodHandle}, so no reflective lookup, access check or
+ * {@code setAccessible} call happens per read. Fields that do not exist are cached as {@link FieldAccessor#MISSING},
+ * so repeated misses cost a map lookup instead of a {@link NoSuchFieldException}.
+ */
+public final class FieldAccessors {
+
+    private static final Logger logger = LoggerFactory.getLogger(FieldAccessors.class);
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    // ClassValue keeps the cache tied to the class, so it does not pin class loaders of unloaded classes
+    private static final ClassValue<Map<String, FieldAccessor>> CACHE = new ClassValue<Map<String, FieldAccessor>>() {
+        @Override
+        protected Map<String, FieldAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private FieldAccessors() {
+    }
+
+    /**
+     * Returns the cached accessor for the given field, resolving it on first use.
+     *
+     * @param type      The class to read from.
+     * @param fieldName The field name.
+     * @return The accessor, or {@link FieldAccessor#MISSING} if the class has no such field.
+     */
+    public static FieldAccessor forField(Class<?> type, String fieldName) {
+        Map<String, FieldAccessor> accessors = CACHE.get(type);
+        FieldAccessor accessor = accessors.get(fieldName);
+        if (accessor == null) {
+            accessor = accessors.computeIfAbsent(fieldName, name -> resolve(type, name));
+        }
+        return accessor;
+    }
+
+    private static FieldAccessor resolve(Class<?> type, String fieldName) {
+        Field field = findField(type, fieldName);
+        if (field == null) {
+            logger.debug("Field '{}' not found in class '{}'. Caching negative lookup.", fieldName, type.getName());
+            return FieldAccessor.MISSING;
+        }
+
+        try {
+            Method getter = findGetter(type, field);
+            MethodHandle handle;
+            if (getter != null) {
+                getter.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(getter);
+                logger.debug("Resolved field '{}' in class '{}' to getter '{}'.", fieldName, type.getName(), getter.getName());
+            } else {
+                field.setAccessible(true);
+                handle = MethodHandles.lookup().unreflectGetter(field);
+                logger.debug("Resolved field '{}' in class '{}' to direct field access.", fieldName, type.getName());
+            }
+            return new MethodHandleAccessor(handle.asType(GETTER_TYPE), type.getName() + "." + fieldName);
+        } catch (IllegalAccessException iae) {
+            logger.error("Illegal access when resolving field '{}' in class '{}': {}", fieldName, type.getName(), iae.getMessage());
+            throw new IllegalStateException("Cannot access field '" + fieldName + "' in " + type.getName(), iae);
+        }
+    }
+
+    /**
+     * Searches for a non-static field in a class and its superclasses.
+     */
+    static Field findField(Class<?> type, String fieldName) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.getName().equals(fieldName) && !Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the no-arg getter for a field following the JavaBeans/Lombok naming convention.
+     */
+    static Method findGetter(Class<?> type, Field field) {
+        String name = field.getName();
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        String[] candidates = field.getType() == boolean.class
+                ? new String[]{"is" + suffix, "get" + suffix}
+                : new String[]{"get" + suffix};
+        for (String candidate : candidates) {
+            try {
+                Method method = type.getMethod(candidate);
+                if (!Modifier.isStatic(method.getModifiers()) && method.getReturnType() == field.getType()) {
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {
+                // Fall through to the next candidate, or to direct field access
+            }
+        }
+        return null;
+    }
+
+    /**
+     * FieldAccessor backed by a getter or field-getter MethodHandle adapted to (Object)Object.
+     */
+    private static final class MethodHandleAccessor implements FieldAccessor {
+        private final MethodHandle handle;
+        private final String description;
+
+        private MethodHandleAccessor(MethodHandle handle, String description) {
+            this.handle = handle;
+            this.description = description;
+        }
+
+        @Override
+        public Object get(Object target) throws Exception {
+            try {
+                return (Object) handle.invokeExact(target);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Failed to read " + description, t);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "FieldAccessor{" + description + '}';
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package org.rutz;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The channel a streamed document is written to when it goes to a file. Bytes are collected in a direct buffer of
+ * {@link XmlWriteOptions#getFileBufferSize()} and written to a {@link FileChannel} when it is full, so a document of any
+ * size needs that buffer and nothing more, and large documents take few system calls. With
+ * {@link XmlWriteOptions#getCompression()}, bytes are compressed on their way to the buffer.
+ * <p>
+ * With {@link XmlWriteOptions#isAtomicFileWrite()} the channel is on a temporary file next to the target, which
+ * {@link #commit()} renames over the target; closing without committing deletes it, so a failed conversion leaves the
+ * previous file untouched. With {@link XmlWriteOptions#isFsync()} the data is forced to disk before the file is
+ * complete. Not thread-safe.
+ */
+final class FileSink implements WritableByteChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSink.class);
+
+    // Direct buffers are expensive to allocate and are freed only by GC, so finished files return them here
+    private static final BlockingQueue<ByteBuffer> BUFFER_POOL = new ArrayBlockingQueue<>(4);
+
+    private final Path target;
+    private final Path temp;
+    private final boolean fsync;
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    // Null without compression; writes its output to the buffer through writeRaw
+    private OutputStream compressor;
+    private boolean committed;
+
+    private FileSink(Path target, Path temp, boolean fsync, FileChannel channel, ByteBuffer buffer) {
+        this.target = target;
+        this.temp = temp;
+        this.fsync = fsync;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens the target file, or a temporary file next to it, for writing, compressed as the options say.
+     */
+    static FileSink open(File file, XmlWriteOptions options) throws IOException {
+        return open(file, options, true);
+    }
+
+    /**
+     * Opens the target file, or a temporary file next to it, for writing.
+     *
+     * @param compressed Whether to apply {@link XmlWriteOptions#getCompression()}.
+     */
+    static FileSink open(File file, XmlWriteOptions options, boolean compressed) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = null;
+        FileChannel channel;
+        if (options.isAtomicFileWrite()) {
+            // Same directory, so the rename stays on one file system. Not Files.createTempFile: its owner-only
+            // permissions would end up on the target
+            temp = target.resolveSibling("." + target.getFileName() + "."
+                    + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } else {
+            channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        }
+        FileSink sink = new FileSink(target, temp, options.isFsync(), channel, takeBuffer(options.getFileBufferSize()));
+        if (compressed && options.getCompression() != XmlWriteOptions.Compression.NONE) {
+            OutputStream raw = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    sink.writeRaw(ByteBuffer.wrap(b, off, len));
+                }
+            };
+            try {
+                sink.compressor = CompressingOutputStream.wrap(raw, options);
+            } catch (IOException | RuntimeException e) {
+                sink.close();
+                throw e;
+            }
+        }
+        return sink;
+    }
+
+    @Override
+    public int write(ByteBuffer bytes) throws IOException {
+        if (compressor == null) {
+            return writeRaw(bytes);
+        }
+        int written = bytes.remaining();
+        if (bytes.hasArray()) {
+            compressor.write(bytes.array(), bytes.arrayOffset() + bytes.position(), written);
+            bytes.position(bytes.limit());
+        } else {
+            byte[] copy = new byte[written];
+            bytes.get(copy);
+            compressor.write(copy, 0, written);
+        }
+        return written;
+    }
+
+    private int writeRaw(ByteBuffer bytes) throws IOException {
+        int written = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            if (buffer.position() == 0 && bytes.remaining() >= buffer.capacity()) {
+                // Nothing to gain from copying a chunk that fills the whole buffer
+                writeFully(bytes);
+            } else {
+                int chunk = Math.min(buffer.remaining(), bytes.remaining());
+                int limit = bytes.limit();
+                bytes.limit(bytes.position() + chunk);
+                buffer.put(bytes);
+                bytes.limit(limit);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Finishes compression, writes the remaining bytes, forces them to disk if requested and, for atomic writes,
+     * renames the temporary file over the target.
+     */
+    void commit() throws IOException {
+        if (compressor != null) {
+            CompressingOutputStream.finish(compressor);
+        }
+        drain();
+        if (fsync) {
+            channel.force(true);
+        }
+        channel.close();
+        if (temp != null) {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                logger.warn("Cannot atomically replace '{}'; replacing it non-atomically.", target);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (fsync) {
+                forceDirectory(target.getParent());
+            }
+        }
+        committed = true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * Releases the buffer, the compressor and the file. Without a successful {@link #commit()}, the temporary file of an
+     * atomic write is deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (compressor != null) {
+            CompressingOutputStream.abort(compressor);
+        }
+        if (buffer != null) {
+            BUFFER_POOL.offer(buffer);
+            buffer = null;
+        }
+        try {
+            channel.close();
+        } finally {
+            if (temp != null && !committed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private static ByteBuffer takeBuffer(int size) {
+        ByteBuffer pooled = BUFFER_POOL.poll();
+        if (pooled != null && pooled.capacity() == size) {
+            return pooled.clear();
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * Makes the rename durable. Directories cannot be opened as channels on every platform, so failure is only logged.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not force directory '{}' to disk: {}", directory, e.getMessage());
+        }
+    }
+}
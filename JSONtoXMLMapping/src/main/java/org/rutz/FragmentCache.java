@@ -0,0 +1,192 @@
+package org.rutz;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the serialized XML of collection items between conversions, so a response that is mostly unchanged since the
+ * last poll is written largely by copying bytes. Enable it with {@link XmlWriteOptions#getFragmentCache()}.
+ * <p>
+ * Every item of a group that has child groups (e.g. each Branch, Team and Member) is snapshotted: the values the
+ * writer would read from it and its child items are collected and hashed, without converting or writing anything. If
+ * an entry for that hash was written from equal values, its bytes are spliced into the output; otherwise the item is
+ * written as usual and its bytes are stored. An item that changed is re-written, but its unchanged child items still
+ * come from the cache. Because values are compared with {@code equals}, a hash collision costs a re-write, never wrong
+ * output. Entries keep copies of immutable values only, never the objects they were read from, so a cache does not
+ * keep old responses alive; items with values of other types, e.g. a bean mapped as a field, are written every time.
+ * <p>
+ * Entries belong to the compiled group and the formatting options they were written with, so one cache can be shared
+ * by threads, plans and both streaming backends. It holds at most about {@code maxBytes} of fragments and the values
+ * they were written from, each entry counting its values in full even where entries of nested items share them; the
+ * least recently used entries are evicted first, and items larger than a quarter of the capacity are never stored.
+ * Thread-safe.
+ */
+public class FragmentCache {
+
+    // Approximate heap cost of an entry besides its bytes and values: key, entry, map node and byte array header
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long sizeBytes;
+    private long evictions;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxBytes The maximum total size of cached fragments.
+     */
+    public FragmentCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be at least 1, was " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 4;
+    }
+
+    /**
+     * @param needsCounters Whether the caller collects metrics; entries stored without counters then miss.
+     * @return The entry written from the snapshot's values, or null; counted as a hit or a miss.
+     */
+    Entry get(Key key, ValueSnapshot snapshot, boolean needsCounters) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        // Compared outside the lock; entries are immutable
+        if (entry != null && snapshot.matches(entry.values) && (entry.counters != null || !needsCounters)) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a rendered fragment, replacing any entry with the same key.
+     *
+     * @param counters The group counters rendering added, or null if metrics were disabled.
+     * @return The new entry, whether it was stored or too large for the cache.
+     */
+    Entry put(Key key, ValueSnapshot snapshot, byte[] bytes, ConversionStats counters) {
+        Object[] values = snapshot.toStoredValues();
+        Entry entry = new Entry(bytes, values, counters);
+        if (values == null || entry.cost > maxEntryBytes) {
+            return entry;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            sizeBytes += entry.cost;
+            if (previous != null) {
+                sizeBytes -= previous.cost;
+            }
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (sizeBytes > maxBytes) {
+                sizeBytes -= eldest.next().cost;
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Removes all entries. The hit, miss and eviction counts are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return The size of the cached fragments, including an estimate of their stored values and bookkeeping.
+     */
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FragmentCache{" +
+                "entries=" + entries.size() +
+                ", sizeBytes=" + sizeBytes +
+                ", maxBytes=" + maxBytes +
+                ", hits=" + hits.sum() +
+                ", misses=" + misses.sum() +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    /**
+     * Identifies the slot of a fragment: the group it is an item of, the hash of its values, and the indent it was
+     * written with (-1 when not pretty printed). Together with the values these determine its bytes.
+     */
+    static final class Key {
+        private final MappingPlan.GroupPlan group;
+        private final long hash;
+        private final int indent;
+
+        Key(MappingPlan.GroupPlan group, long hash, int indent) {
+            this.group = group;
+            this.hash = hash;
+            this.indent = indent;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return group == key.group && hash == key.hash && indent == key.indent;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ hash >>> 32) + indent;
+        }
+    }
+
+    /**
+     * A cached fragment, the values it was written from (null if they cannot be stored), and the group counters
+     * writing it added to the stats, which a hit adds again.
+     */
+    static final class Entry {
+        final byte[] bytes;
+        final Object[] values;
+        final ConversionStats counters;
+        final long cost;
+
+        private Entry(byte[] bytes, Object[] values, ConversionStats counters) {
+            this.bytes = bytes;
+            this.values = values;
+            this.counters = counters;
+            this.cost = bytes.length + (values != null ? ValueSnapshot.storedSize(values) : 0) + ENTRY_OVERHEAD;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.rutz;
+
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConversionMetrics that keeps latency histograms and counters in memory and exposes them through {@link #snapshot()}.
+ * <p>
+ * Histograms use power-of-two buckets, so percentiles are upper bounds accurate to within a factor of two; enough to
+ * tell which phase dominates. Safe for concurrent conversions.
+ */
+public class InMemoryConversionMetrics implements ConversionMetrics {
+
+    private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+    private final Map<String, GroupCounters> groups = new ConcurrentHashMap<>();
+
+    public InMemoryConversionMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Histogram());
+        }
+    }
+
+    @Override
+    public void recordPhase(Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    @Override
+    public void recordGroup(String group, long elements, long skippedNulls, long conversionFailures) {
+        GroupCounters counters = groups.computeIfAbsent(group, g -> new GroupCounters());
+        counters.elements.add(elements);
+        counters.skippedNulls.add(skippedNulls);
+        counters.conversionFailures.add(conversionFailures);
+    }
+
+    /**
+     * @return A consistent-enough copy of the current numbers; recording continues concurrently.
+     */
+    public Snapshot snapshot() {
+        Map<Phase, PhaseSnapshot> phaseSnapshots = new EnumMap<>(Phase.class);
+        for (Map.Entry<Phase, Histogram> entry : phases.entrySet()) {
+            phaseSnapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        Map<String, GroupSnapshot> groupSnapshots = new TreeMap<>();
+        for (Map.Entry<String, GroupCounters> entry : groups.entrySet()) {
+            GroupCounters counters = entry.getValue();
+            groupSnapshots.put(entry.getKey(), new GroupSnapshot(counters.elements.sum(), counters.skippedNulls.sum(),
+                    counters.conversionFailures.sum()));
+        }
+        return new Snapshot(Collections.unmodifiableMap(phaseSnapshots), Collections.unmodifiableMap(groupSnapshots));
+    }
+
+    /**
+     * Clears all histograms and counters.
+     */
+    public void reset() {
+        for (Histogram histogram : phases.values()) {
+            histogram.reset();
+        }
+        groups.clear();
+    }
+
+    /**
+     * Latency histogram with one bucket per power of two nanoseconds.
+     */
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+        void record(long nanos) {
+            long value = Math.max(0L, nanos);
+            // Bucket i holds values up to 2^i - 1; bucket 0 holds only 0
+            buckets.incrementAndGet(Math.min(63, 64 - Long.numberOfLeadingZeros(value)));
+            count.increment();
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+        }
+
+        PhaseSnapshot snapshot() {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            return new PhaseSnapshot(count.sum(), totalNanos.sum(), maxNanos.get(),
+                    percentile(counts, total, 0.50), percentile(counts, total, 0.99));
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given quantile.
+         */
+        private static long percentile(long[] counts, long total, double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static final class GroupCounters {
+        final LongAdder elements = new LongAdder();
+        final LongAdder skippedNulls = new LongAdder();
+        final LongAdder conversionFailures = new LongAdder();
+    }
+
+    /**
+     * Numbers of all phases and groups at the time of {@link #snapshot()}.
+     */
+    @Value
+    public static class Snapshot {
+        Map<Phase, PhaseSnapshot> phases;
+        /**
+         * Counters per group name, sorted by name.
+         */
+        Map<String, GroupSnapshot> groups;
+    }
+
+    /**
+     * Latency of one phase. {@code count} is the number of recordings, i.e. documents, chunks or loads.
+     */
+    @Value
+    public static class PhaseSnapshot {
+        long count;
+        long totalNanos;
+        long maxNanos;
+        long p50Nanos;
+        long p99Nanos;
+    }
+
+    @Value
+    public static class GroupSnapshot {
+        long elements;
+        long skippedNulls;
+        long conversionFailures;
+    }
+}
@@ -1,99 +1,76 @@
-package org.example;
+package org.rutz;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
+import java.io.OutputStream;
 
+/**
+ * Copies the {@code projects} array of every nested object whose {@code targetFieldName} equals
+ * {@code targetFieldValue} into a {@code projects_copied} array, adding {@code copyFieldName: targetFieldValue} to
+ * each copied project.
+ * <p>
+ * This is a single copy rule of a {@link JsonTransformPipeline}; combine it with other rules there to apply them all
+ * in one pass. {@code projects_copied} is written as the last member of the matching object. Objects nested inside a
+ * matching object are transformed too, and the copies contain the transformed projects.
+ */
 public class JsonModifier {
 
-    public static JSONObject modifyJson(JSONObject inputJson, String targetFieldName, String targetFieldValue, String copyFieldName) {
-        // Process the JSON object recursively
-        processJsonObject(inputJson, targetFieldName, targetFieldValue, copyFieldName);
-        return inputJson;
-    }
+    private static final Logger logger = LoggerFactory.getLogger(JsonModifier.class);
 
-    private static void processJsonObject(JSONObject jsonObject, String targetFieldName, String targetFieldValue, String copyFieldName) {
-        Iterator<String> keys = jsonObject.keys();
-        while (keys.hasNext()) {
-            String key = keys.next();
-            Object value = jsonObject.get(key);
+    static final String PROJECTS = "projects";
+    static final String PROJECTS_COPIED = "projects_copied";
 
-            if (value instanceof JSONObject) {
-                JSONObject childObj = (JSONObject) value;
-                boolean matched = childObj.has(targetFieldName) && targetFieldValue.equals(childObj.optString(targetFieldName));
-                if (matched && childObj.has("projects")) {
-                    deepCopyArrayAndAddField(childObj, copyFieldName, targetFieldName);
-                    // Skip further recursion for this object since it's already processed
-                    continue;
-                }
-                processJsonObject(childObj, targetFieldName, targetFieldValue, copyFieldName);
-            } else if (value instanceof JSONArray) {
-                processJsonArray((JSONArray) value, targetFieldName, targetFieldValue, copyFieldName);
-            }
-        }
+    /**
+     * @return The rule applied by {@link #modifyJson}.
+     */
+    public static JsonTransformRule copyProjectsRule(String targetFieldName, String targetFieldValue, String copyFieldName) {
+        return JsonTransformRule.copy(PROJECTS, PROJECTS_COPIED)
+                .when(targetFieldName, targetFieldValue)
+                .tagCopies(copyFieldName, targetFieldValue);
     }
 
-    private static void processJsonArray(JSONArray jsonArray, String targetFieldName, String targetFieldValue, String copyFieldName) {
-        for (int i = 0; i < jsonArray.length(); i++) {
-            Object element = jsonArray.get(i);
-            if (element instanceof JSONObject) {
-                JSONObject jsonObject = (JSONObject) element;
-                boolean matched = jsonObject.has(targetFieldName) && targetFieldValue.equals(jsonObject.optString(targetFieldName));
-                if (matched && jsonObject.has("projects")) {
-                    deepCopyArrayAndAddField(jsonObject, copyFieldName, targetFieldName);
-                    // Skip further recursion for this object since it's already processed
-                    continue;
-                }
-                processJsonObject(jsonObject, targetFieldName, targetFieldValue, copyFieldName);
-            }
-        }
+    /**
+     * Transforms the JSON document read from {@code in} and writes the result to {@code out} as UTF-8.
+     *
+     * @param in               The JSON input; it is not closed.
+     * @param out              The stream to write to; it is flushed but not closed.
+     * @param targetFieldName  Name of the field that selects objects, e.g. "role".
+     * @param targetFieldValue Value the field must have, e.g. "Software Engineer".
+     * @param copyFieldName    Name of the field added to each copied project.
+     */
+    public static void modifyJson(InputStream in, OutputStream out, String targetFieldName, String targetFieldValue,
+                                  String copyFieldName) throws IOException {
+        JsonTransformPipeline.of(copyProjectsRule(targetFieldName, targetFieldValue, copyFieldName)).transform(in, out);
     }
 
-    private static void deepCopyArrayAndAddField(JSONObject jsonObject, String copyFieldName, String targetFieldName) {
-        JSONArray projects = jsonObject.optJSONArray("projects");
-        if (projects == null) return;
-        JSONArray projectsCopied = new JSONArray();
-        for (int i = 0; i < projects.length(); i++) {
-            JSONObject project = projects.getJSONObject(i);
-            JSONObject copiedProject = new JSONObject(project.toString());
-            copiedProject.put(copyFieldName, jsonObject.optString(targetFieldName));
-            projectsCopied.put(copiedProject);
-        }
-        jsonObject.put("projects_copied", projectsCopied);
+    /**
+     * Transforms the next JSON value of {@code parser} into {@code generator}. The parser is left on the value's last
+     * token; the generator is not flushed.
+     */
+    public static void modifyJson(JsonParser parser, JsonGenerator generator, String targetFieldName,
+                                  String targetFieldValue, String copyFieldName) throws IOException {
+        JsonTransformPipeline.of(copyProjectsRule(targetFieldName, targetFieldValue, copyFieldName)).transform(parser, generator);
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // Read the JSON data from a file in the resources folder
-        JSONObject inputJson = loadJsonFromFile("data.json");
-
-        if (inputJson != null) {
-            // Modify the JSON based on the specified role and copy field name
-            JSONObject modifiedJson = modifyJson(inputJson, "role", "Software Engineer", "Copied_field_role");
-
-            // Output the modified JSON
-            System.out.println(modifiedJson.toString(2)); // Pretty print with 2 spaces
-        }
-    }
-
-    private static JSONObject loadJsonFromFile(String fileName) {
-        // Try to load the file from the resources folder
-        try (InputStream inputStream = JsonModifier.class.getClassLoader().getResourceAsStream(fileName)) {
+        try (InputStream inputStream = JsonModifier.class.getClassLoader().getResourceAsStream("data.json")) {
             if (inputStream == null) {
-                System.err.println("File not found: " + fileName);
-                return null;
+                logger.error("File not found: data.json");
+                return;
             }
-
-            // Convert the InputStream to a String
-            String jsonContent = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
-
-            // Return the parsed JSONObject
-            return new JSONObject(jsonContent);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+            try (JsonParser parser = JsonTransformPipeline.JSON_FACTORY.createParser(inputStream);
+                 JsonGenerator generator = JsonTransformPipeline.JSON_FACTORY.createGenerator(System.out).useDefaultPrettyPrinter()) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // Modify the JSON based on the specified role and copy field name
+                modifyJson(parser, generator, "role", "Software Engineer", "Copied_field_role");
+            }
+            System.out.println();
         }
     }
 }
@@ -0,0 +1,378 @@
+package org.rutz;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a JSON API response to XML straight from a streaming parser, applying a {@link MappingPlan} to JSON keys
+ * instead of POJO fields. No object graph is built and nothing is reflected on; memory use is bounded by the nesting
+ * depth and the scalar fields of the objects currently open, not by the size of the response.
+ * <p>
+ * The XML matches what {@link XmlBuilder} writes for the same data as POJOs, with one difference in ordering: the
+ * mapped fields of an object are written in mapping order, but only those that appear before the object's first
+ * nested collection are held back for that. Fields after a nested collection, and nested collections themselves, are
+ * written in the order they appear in the JSON. JSON serialized from the POJOs lists fields before collections.
+ * Groups whose paths share an intermediate segment are also written into a single element for that segment, since
+ * the JSON object behind it is only read once.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+public class JsonStreamConverter {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonStreamConverter.class);
+
+    // JsonFactory is thread-safe and caches symbol tables between parsers
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final MappingPlan plan;
+    private final JsonTransformPipeline pipeline;
+    private final ObjectRules rootRules;
+
+    /**
+     * @param plan The compiled MappingPlan; API field names and path segments are matched against JSON keys.
+     */
+    public JsonStreamConverter(MappingPlan plan) {
+        this(plan, null);
+    }
+
+    /**
+     * @param plan     The compiled MappingPlan; API field names and path segments are matched against JSON keys.
+     * @param pipeline Rules applied to the JSON in the same pass, before mapping; null for none.
+     */
+    public JsonStreamConverter(MappingPlan plan, JsonTransformPipeline pipeline) {
+        this.plan = plan;
+        this.pipeline = pipeline;
+        List<MappingPlan.GroupPlan> singleObjectGroups = new ArrayList<>();
+        for (MappingPlan.GroupPlan group : plan.getGroups()) {
+            if (group.isSingleObject()) {
+                singleObjectGroups.add(group);
+            }
+        }
+        this.rootRules = compileRules(singleObjectGroups, plan.getRootNodes());
+    }
+
+    /**
+     * Converts the JSON document read from {@code json} and writes the XML to {@code out}.
+     *
+     * @param json    The JSON response; its encoding is detected. It is read to the end of the first value but not closed.
+     * @param out     The stream to write UTF-8 encoded XML to, compressed if the options say so; it is flushed but not
+     *                closed.
+     * @param options Formatting options; {@link XmlWriteOptions#isParallel()} is ignored.
+     * @throws Exception if the JSON is malformed or its top-level value is not an object, or writing fails.
+     */
+    public void convert(InputStream json, OutputStream out, XmlWriteOptions options) throws Exception {
+        OutputStream target = CompressingOutputStream.wrap(out, options);
+        try {
+            try (XmlOutput output = XmlBuilder.createOutput(target, options)) {
+                convert(json, output);
+            }
+            CompressingOutputStream.finish(target);
+        } finally {
+            CompressingOutputStream.abort(target);
+        }
+    }
+
+    /**
+     * Converts the JSON document read from {@code json} into the given output.
+     */
+    public void convert(InputStream json, XmlOutput output) throws Exception {
+        ConversionMetrics metrics = XmlBuilder.getMetrics();
+        ConversionStats stats = ConversionStats.start(metrics);
+        JsonParser jsonParser = JSON_FACTORY.createParser(json);
+        jsonParser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        try (JsonParser parser = pipeline != null ? pipeline.wrap(jsonParser) : jsonParser) {
+            if (next(parser, stats) != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Expected a JSON object at the top level but found " + parser.currentToken());
+            }
+            output.startDocument();
+            output.startElement(plan.getRootXmlName());
+            if (stats != null) {
+                for (MappingPlan.GroupPlan group : plan.getGroups()) {
+                    if (group.isSingleObject()) {
+                        stats.group(group)[ConversionStats.ELEMENTS]++;
+                    }
+                }
+            }
+            readObject(parser, output, rootRules, stats);
+            output.endElement();
+            output.endDocument();
+        }
+        if (stats != null) {
+            stats.reportTo(metrics);
+        }
+    }
+
+    /**
+     * Reads the members of the object the parser is positioned at, up to its END_OBJECT. The object's element has
+     * already been started by the caller.
+     */
+    private void readObject(JsonParser parser, XmlOutput output, ObjectRules rules, ConversionStats stats) throws Exception {
+        Object[] pending = rules.fields.length > 0 ? new Object[rules.fields.length] : null;
+        boolean fieldsWritten = pending == null;
+
+        while (next(parser, stats) == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            JsonToken value = next(parser, stats);
+
+            FieldRule field = rules.fieldsByKey.get(key);
+            if (field != null) {
+                Object values = readFieldValue(parser, value, field, stats);
+                if (values == null) {
+                    continue;
+                }
+                if (fieldsWritten) {
+                    writeField(output, field, values, stats);
+                } else {
+                    pending[field.slot] = values;
+                }
+                continue;
+            }
+
+            Step step = rules.stepsByKey.get(key);
+            if (step != null) {
+                if (!fieldsWritten) {
+                    writePendingFields(output, rules, pending, stats);
+                    fieldsWritten = true;
+                }
+                readStepValue(parser, output, step, value, stats);
+                continue;
+            }
+
+            // Not mapped
+            parser.skipChildren();
+        }
+
+        if (!fieldsWritten) {
+            writePendingFields(output, rules, pending, stats);
+        }
+    }
+
+    /**
+     * Reads the value of a key that leads into a group: a single object, an array of objects, or null.
+     */
+    private void readStepValue(JsonParser parser, XmlOutput output, Step step, JsonToken value, ConversionStats stats) throws Exception {
+        if (value == JsonToken.START_ARRAY) {
+            JsonToken item;
+            while ((item = next(parser, stats)) != JsonToken.END_ARRAY) {
+                readStepItem(parser, output, step, item, stats);
+            }
+        } else {
+            readStepItem(parser, output, step, value, stats);
+        }
+    }
+
+    private void readStepItem(JsonParser parser, XmlOutput output, Step step, JsonToken item, ConversionStats stats) throws Exception {
+        if (item == JsonToken.VALUE_NULL) {
+            if (stats != null) {
+                stats.group(step.group)[ConversionStats.SKIPPED_NULLS]++;
+            }
+            return;
+        }
+        if (item == JsonToken.START_OBJECT) {
+            if (step.last && stats != null) {
+                stats.group(step.group)[ConversionStats.ELEMENTS]++;
+            }
+            output.startElement(step.elementName);
+            readObject(parser, output, step.rules, stats);
+            output.endElement();
+            return;
+        }
+        if (item.isScalarValue() && step.last) {
+            // A scalar item has no mapped fields, like a String in a List<String> on the POJO side
+            if (stats != null) {
+                stats.group(step.group)[ConversionStats.ELEMENTS]++;
+            }
+            output.startElement(step.elementName);
+            output.endElement();
+            return;
+        }
+        parser.skipChildren();
+    }
+
+    /**
+     * Reads a mapped field's value: a String for scalars, a List of Strings for arrays of list fields,
+     * or null if there is nothing to write.
+     */
+    private static Object readFieldValue(JsonParser parser, JsonToken value, FieldRule field, ConversionStats stats) throws Exception {
+        if (value == JsonToken.VALUE_NULL) {
+            if (stats != null) {
+                stats.group(field.group)[ConversionStats.SKIPPED_NULLS]++;
+            }
+            return null;
+        }
+        if (value.isScalarValue() && !field.plan.isList()) {
+            return parser.getText();
+        }
+        if (value == JsonToken.START_ARRAY && field.plan.isList()) {
+            List<String> values = new ArrayList<>();
+            JsonToken item;
+            while ((item = next(parser, stats)) != JsonToken.END_ARRAY) {
+                if (item.isScalarValue() && item != JsonToken.VALUE_NULL) {
+                    values.add(parser.getText());
+                } else {
+                    if (item == JsonToken.VALUE_NULL && stats != null) {
+                        stats.group(field.group)[ConversionStats.SKIPPED_NULLS]++;
+                    }
+                    parser.skipChildren();
+                }
+            }
+            return values;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Skipping field '{}': expected a {} but found {}.", field.plan.getApiFieldName(),
+                    field.plan.isList() ? "list" : "scalar", value);
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static void writePendingFields(XmlOutput output, ObjectRules rules, Object[] pending, ConversionStats stats) throws Exception {
+        for (int i = 0; i < pending.length; i++) {
+            if (pending[i] != null) {
+                writeField(output, rules.fields[i], pending[i], stats);
+            }
+        }
+    }
+
+    private static void writeField(XmlOutput output, FieldRule field, Object values, ConversionStats stats) throws Exception {
+        if (values instanceof List<?>) {
+            for (Object value : (List<?>) values) {
+                writeFieldValue(output, field, (String) value, stats);
+            }
+        } else {
+            writeFieldValue(output, field, (String) values, stats);
+        }
+    }
+
+    private static void writeFieldValue(XmlOutput output, FieldRule field, String value, ConversionStats stats) throws Exception {
+        StringBuilder text = output.textBuffer();
+        boolean converted;
+        if (stats == null) {
+            converted = field.plan.getConverter().convert(value, text);
+        } else {
+            long start = System.nanoTime();
+            converted = field.plan.getConverter().convert(value, text);
+            stats.convertNanos += System.nanoTime() - start;
+        }
+        if (!converted) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Skipping field '{}': cannot convert '{}' to {}.", field.plan.getApiFieldName(), value,
+                        field.plan.getXmlDataType());
+            }
+            if (stats != null) {
+                stats.group(field.group)[ConversionStats.CONVERSION_FAILURES]++;
+            }
+            return;
+        }
+        output.textElement(field.plan.getXmlName(), text);
+    }
+
+    /**
+     * Advances the parser, adding the time to {@link ConversionStats#extractNanos} when measuring.
+     */
+    private static JsonToken next(JsonParser parser, ConversionStats stats) throws Exception {
+        if (stats == null) {
+            return parser.nextToken();
+        }
+        long start = System.nanoTime();
+        try {
+            return parser.nextToken();
+        } finally {
+            stats.extractNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Builds the key lookup for objects holding the fields of {@code fieldGroups} and leading into {@code childNodes}.
+     */
+    private static ObjectRules compileRules(List<MappingPlan.GroupPlan> fieldGroups, List<MappingPlan.PathNode> childNodes) {
+        List<FieldRule> fields = new ArrayList<>();
+        Map<String, FieldRule> fieldsByKey = new HashMap<>();
+        for (MappingPlan.GroupPlan group : fieldGroups) {
+            for (MappingPlan.FieldPlan field : group.getFields()) {
+                FieldRule rule = new FieldRule(field, group, fields.size());
+                fields.add(rule);
+                fieldsByKey.putIfAbsent(field.getApiFieldName(), rule);
+            }
+        }
+        ObjectRules rules = new ObjectRules(fields.toArray(new FieldRule[0]), fieldsByKey);
+        for (MappingPlan.PathNode node : childNodes) {
+            rules.stepsByKey.put(node.getSegment(), compileStep(node));
+        }
+        return rules;
+    }
+
+    /**
+     * Compiles a node of the plan's path tree. Groups sharing intermediate segments share the path objects.
+     */
+    private static Step compileStep(MappingPlan.PathNode node) {
+        List<MappingPlan.GroupPlan> groups = node.getGroups();
+        if (groups.isEmpty()) {
+            return new Step(node.getGroup(), node.getXmlName(), false, compileRules(Collections.emptyList(), node.getChildren()));
+        }
+        MappingPlan.GroupPlan group = groups.get(0);
+        for (int i = 1; i < groups.size(); i++) {
+            logger.warn("Key '{}' is mapped by groups '{}' and '{}'. Ignoring group '{}' for JSON input.",
+                    node.getSegment(), group.getName(), groups.get(i).getName(), groups.get(i).getName());
+        }
+        ObjectRules itemRules = compileRules(Collections.singletonList(group), group.getChildNodes());
+        return new Step(group, group.getXmlName(), true, itemRules);
+    }
+
+    /**
+     * What to do with the keys of one kind of JSON object.
+     */
+    private static final class ObjectRules {
+        final FieldRule[] fields;
+        final Map<String, FieldRule> fieldsByKey;
+        final Map<String, Step> stepsByKey = new HashMap<>();
+
+        ObjectRules(FieldRule[] fields, Map<String, FieldRule> fieldsByKey) {
+            this.fields = fields;
+            this.fieldsByKey = fieldsByKey;
+        }
+    }
+
+    /**
+     * A mapped field and its slot among the object's pending values.
+     */
+    private static final class FieldRule {
+        final MappingPlan.FieldPlan plan;
+        final MappingPlan.GroupPlan group;
+        final int slot;
+
+        FieldRule(MappingPlan.FieldPlan plan, MappingPlan.GroupPlan group, int slot) {
+            this.plan = plan;
+            this.group = group;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * A key leading into a group: either the group's items ({@code last}) or an intermediate path object.
+     */
+    private static final class Step {
+        final MappingPlan.GroupPlan group;
+        final XmlName elementName;
+        final boolean last;
+        final ObjectRules rules;
+
+        Step(MappingPlan.GroupPlan group, XmlName elementName, boolean last, ObjectRules rules) {
+            this.group = group;
+            this.elementName = elementName;
+            this.last = last;
+            this.rules = rules;
+        }
+    }
+}
@@ -0,0 +1,701 @@
+package org.rutz;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies a list of {@link JsonTransformRule}s to a JSON document in a single pass.
+ * <p>
+ * The rules are compiled once into per-selector lookup tables. {@link #wrap(JsonParser)} returns a parser that yields
+ * the transformed tokens as they are pulled, so it can be handed straight to {@link JsonStreamConverter} (see
+ * {@link JsonStreamConverter#JsonStreamConverter(MappingPlan, JsonTransformPipeline)}) and the document is read,
+ * transformed and converted in one traversal. Renames and removals are applied as keys are read; injected members and
+ * copies are added when their object ends, since their conditions may depend on any member. For the same reason, an
+ * object selected by a filter is read ahead until it ends, and passed on only if it is kept. Only the values that may
+ * be copied and the objects that may be filtered are buffered, as tokens. Nesting is tracked on the heap, so deep input
+ * cannot overflow the call stack.
+ * <p>
+ * Copies contain the transformed value. Instances are immutable and may be shared between threads.
+ */
+public final class JsonTransformPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonTransformPipeline.class);
+
+    // The transform is iterative, so nesting depth is bounded by heap only
+    static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .streamReadConstraints(StreamReadConstraints.builder().maxNestingDepth(Integer.MAX_VALUE).build())
+            .build();
+
+    private static final ObjectRules NO_RULES = new ObjectRules(Collections.emptyList());
+
+    private final List<JsonTransformRule> rules;
+    private final ObjectRules rootRules;
+    private final ObjectRules anyRules;
+    private final Map<String, ObjectRules> keyRules = new HashMap<>();
+    private final boolean filtering;
+
+    private JsonTransformPipeline(List<JsonTransformRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        Set<String> keys = new LinkedHashSet<>();
+        boolean filters = false;
+        for (JsonTransformRule rule : rules) {
+            keys.add(rule.getSelector());
+            filters |= rule.getKind() == JsonTransformRule.Kind.FILTER;
+        }
+        this.filtering = filters;
+        this.rootRules = compile(JsonTransformRule.ROOT, false);
+        this.anyRules = compile(JsonTransformRule.ANY, false);
+        for (String key : keys) {
+            if (!JsonTransformRule.ROOT.equals(key) && !JsonTransformRule.ANY.equals(key)) {
+                keyRules.put(key, compile(key, true));
+            }
+        }
+        logger.debug("Compiled {} JSON transform rules for {} selectors.", rules.size(), keys.size());
+    }
+
+    /**
+     * @param rules The rules, applied in the given order where they touch the same object.
+     */
+    public static JsonTransformPipeline of(JsonTransformRule... rules) {
+        return of(Arrays.asList(rules));
+    }
+
+    public static JsonTransformPipeline of(List<JsonTransformRule> rules) {
+        return new JsonTransformPipeline(rules);
+    }
+
+    public List<JsonTransformRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns a parser that yields the transformed tokens of {@code parser}. The parser must not have been advanced
+     * yet; closing the returned parser closes it.
+     */
+    public JsonParser wrap(JsonParser parser) {
+        return new TransformingParser(this, parser);
+    }
+
+    /**
+     * Transforms the JSON document read from {@code in} and writes the result to {@code out} as UTF-8.
+     *
+     * @param in  The JSON input; it is not closed.
+     * @param out The stream to write to; it is flushed but not closed.
+     */
+    public void transform(InputStream in, OutputStream out) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            transform(parser, generator);
+        }
+    }
+
+    /**
+     * Transforms the next JSON value of {@code parser} into {@code generator}. The parser is left on the value's last
+     * token; the generator is not flushed.
+     */
+    public void transform(JsonParser parser, JsonGenerator generator) throws IOException {
+        JsonParser transformed = wrap(parser);
+        int depth = 0;
+        JsonToken token;
+        while ((token = transformed.nextToken()) != null) {
+            generator.copyCurrentEventExact(transformed);
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            if (depth == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return The rules for an object appearing under {@code parent}, or the top-level object if it is null.
+     */
+    private ObjectRules rulesFor(Frame parent) {
+        if (parent == null) {
+            return rootRules;
+        }
+        return rulesFor(parent.key);
+    }
+
+    /**
+     * @return The rules for an object at {@code key}, or for an item of an array at {@code key}.
+     */
+    private ObjectRules rulesFor(String key) {
+        return key == null ? anyRules : keyRules.getOrDefault(key, anyRules);
+    }
+
+    private ObjectRules compile(String selector, boolean includeAny) {
+        List<JsonTransformRule> selected = new ArrayList<>();
+        for (JsonTransformRule rule : rules) {
+            if (rule.getSelector().equals(selector) || (includeAny && JsonTransformRule.ANY.equals(rule.getSelector()))) {
+                selected.add(rule);
+            }
+        }
+        return selected.isEmpty() ? NO_RULES : new ObjectRules(selected);
+    }
+
+    /**
+     * The rules of one selector, indexed by the keys they react to.
+     */
+    private static final class ObjectRules {
+        final Map<String, String> renames = new HashMap<>();
+        final Set<String> removes = new HashSet<>();
+        final List<JsonTransformRule> filters = new ArrayList<>();
+        // Copy slots by source key
+        final Map<String, int[]> copySlots = new HashMap<>();
+        // Condition slots by member key
+        final Map<String, Integer> conditionSlots = new HashMap<>();
+        // Inject and copy rules, applied in order when the object ends
+        final List<EndRule> endRules = new ArrayList<>();
+        // Copy rules by copy slot
+        final List<EndRule> copyRules = new ArrayList<>();
+        final int copyCount;
+
+        ObjectRules(List<JsonTransformRule> rules) {
+            int copies = 0;
+            for (JsonTransformRule rule : rules) {
+                switch (rule.getKind()) {
+                    case RENAME:
+                        renames.putIfAbsent(rule.getField(), rule.getTarget());
+                        break;
+                    case REMOVE:
+                        removes.add(rule.getField());
+                        break;
+                    case FILTER:
+                        filters.add(rule);
+                        break;
+                    case INJECT:
+                    case COPY:
+                        int conditionSlot = -1;
+                        if (rule.getWhenField() != null) {
+                            conditionSlot = conditionSlots.computeIfAbsent(rule.getWhenField(), key -> conditionSlots.size());
+                        }
+                        int copySlot = -1;
+                        if (rule.getKind() == JsonTransformRule.Kind.COPY) {
+                            copySlot = copies++;
+                            int[] slots = copySlots.get(rule.getField());
+                            int[] extended = slots == null ? new int[1] : Arrays.copyOf(slots, slots.length + 1);
+                            extended[extended.length - 1] = copySlot;
+                            copySlots.put(rule.getField(), extended);
+                        }
+                        EndRule endRule = new EndRule(rule, conditionSlot, copySlot);
+                        endRules.add(endRule);
+                        if (copySlot >= 0) {
+                            copyRules.add(endRule);
+                        }
+                        break;
+                }
+            }
+            this.copyCount = copies;
+        }
+
+        /**
+         * @return true if a filter drops objects whose member {@code key} has the text {@code text}.
+         */
+        boolean drops(String key, String text) {
+            for (JsonTransformRule filter : filters) {
+                if (filter.getField().equals(key) && filter.getValue().equals(text)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class EndRule {
+        final JsonTransformRule rule;
+        final int conditionSlot;
+        final int copySlot;
+
+        EndRule(JsonTransformRule rule, int conditionSlot, int copySlot) {
+            this.rule = rule;
+            this.conditionSlot = conditionSlot;
+            this.copySlot = copySlot;
+        }
+
+        boolean applies(Frame frame) {
+            return conditionSlot < 0 || rule.getWhenValue().equals(frame.conditionValues[conditionSlot]);
+        }
+
+        /**
+         * @return false if the condition is already known to fail, so the copy source need not be buffered.
+         */
+        boolean mayApply(Frame frame) {
+            return conditionSlot < 0 || frame.conditionValues[conditionSlot] == null || applies(frame);
+        }
+    }
+
+    /**
+     * State of one open object or array of the input.
+     */
+    private static final class Frame {
+        // Null for arrays
+        final ObjectRules rules;
+        // The current member's key in objects; the key of the array itself in arrays
+        String key;
+        final String[] conditionValues;
+        final TokenBuffer[] copies;
+
+        Frame(ObjectRules rules, String key) {
+            this.rules = rules;
+            this.key = key;
+            this.conditionValues = rules != null && !rules.conditionSlots.isEmpty() ? new String[rules.conditionSlots.size()] : null;
+            this.copies = rules != null && rules.copyCount > 0 ? new TokenBuffer[rules.copyCount] : null;
+        }
+    }
+
+    /**
+     * Buffers the tokens of one value to be copied, until the value is complete.
+     */
+    private static final class Recorder {
+        final TokenBuffer buffer;
+        int depth;
+
+        Recorder(TokenBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return true once the value is complete.
+         */
+        boolean record(JsonParser parser, JsonToken token) throws IOException {
+            buffer.copyCurrentEventExact(parser);
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            return depth == 0;
+        }
+    }
+
+    /**
+     * Pulls tokens from the source and applies the rules. Added members are served from a token buffer by switching
+     * the delegate to it until the object's closing token. Objects read ahead for a filter, and kept, are read again
+     * from their buffers before the source.
+     */
+    private static final class TransformingParser extends JsonParserDelegate {
+        private final JsonTransformPipeline pipeline;
+        private final JsonParser source;
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        // Tokens read ahead and kept, read before the source; the newest first
+        private final Deque<JsonParser> readAhead = new ArrayDeque<>();
+        // The parser the current input token came from
+        private JsonParser input;
+        // The next member's key has already been looked ahead at
+        private boolean lookedAhead;
+        private final List<Recorder> recorders = new ArrayList<>();
+        private JsonParser replay;
+        private int replayDepth;
+        private String renamed;
+        private Frame pendingCopyFrame;
+        private int[] pendingCopySlots;
+
+        TransformingParser(JsonTransformPipeline pipeline, JsonParser source) {
+            super(source);
+            this.pipeline = pipeline;
+            this.source = source;
+            this.input = source;
+        }
+
+        @Override
+        public JsonToken nextToken() throws IOException {
+            renamed = null;
+            JsonToken token = next();
+            if (token == null) {
+                return null;
+            }
+            for (int i = recorders.size() - 1; i >= 0; i--) {
+                if (recorders.get(i).record(this, token)) {
+                    recorders.remove(i);
+                }
+            }
+            if (pendingCopySlots != null && token != JsonToken.FIELD_NAME) {
+                startCopies(pendingCopyFrame, pendingCopySlots, token);
+                pendingCopyFrame = null;
+                pendingCopySlots = null;
+            }
+            return token;
+        }
+
+        @Override
+        public JsonToken nextValue() throws IOException {
+            JsonToken token = nextToken();
+            return token == JsonToken.FIELD_NAME ? nextToken() : token;
+        }
+
+        @Override
+        public JsonParser skipChildren() throws IOException {
+            // Skipping must go through nextToken, or the frames and buffered copies would miss tokens
+            JsonToken token = currentToken();
+            if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+                return this;
+            }
+            int depth = 1;
+            while (depth > 0 && (token = nextToken()) != null) {
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+            }
+            return this;
+        }
+
+        private JsonToken next() throws IOException {
+            if (replay != null) {
+                JsonToken token = replay.nextToken();
+                if (token.isStructStart()) {
+                    replayDepth++;
+                } else if (token.isStructEnd() && replayDepth-- == 0) {
+                    // The buffer's closing token stands in for the source's END_OBJECT
+                    replay.close();
+                    replay = null;
+                    delegate = input;
+                    frames.pop();
+                }
+                return token;
+            }
+
+            while (true) {
+                JsonToken token = readInput();
+                if (token == null) {
+                    return null;
+                }
+                Frame frame = frames.peek();
+                switch (token) {
+                    case START_OBJECT:
+                        // Objects at a key are filtered when their key is read; array items here
+                        if (pipeline.filtering && frame != null && frame.rules == null) {
+                            ObjectRules itemRules = pipeline.rulesFor(frame.key);
+                            if (!itemRules.filters.isEmpty()) {
+                                TokenBuffer item = readFiltered(itemRules, new TokenBuffer(source));
+                                if (item == null) {
+                                    continue;
+                                }
+                                JsonParser kept = item.asParser();
+                                kept.nextToken();
+                                readAhead.push(kept);
+                                input = kept;
+                                delegate = kept;
+                            }
+                        }
+                        frames.push(new Frame(pipeline.rulesFor(frame), null));
+                        break;
+                    case START_ARRAY:
+                        frames.push(new Frame(null, frame != null ? frame.key : null));
+                        break;
+                    case END_ARRAY:
+                        frames.pop();
+                        break;
+                    case END_OBJECT:
+                        TokenBuffer added = endObject(frame);
+                        if (added != null) {
+                            replay = added.asParser();
+                            replay.nextToken(); // START_OBJECT of the buffer
+                            replayDepth = 0;
+                            delegate = replay;
+                            return next();
+                        }
+                        frames.pop();
+                        break;
+                    case FIELD_NAME: {
+                        String name = input.getCurrentName();
+                        ObjectRules rules = frame.rules;
+                        if (rules.removes.contains(name)) {
+                            skipValue();
+                            continue;
+                        }
+                        if (lookedAhead) {
+                            lookedAhead = false;
+                        } else if (pipeline.filtering) {
+                            ObjectRules valueRules = pipeline.rulesFor(name);
+                            if (!valueRules.filters.isEmpty()) {
+                                lookAhead(valueRules);
+                                continue;
+                            }
+                        }
+                        frame.key = name;
+                        renamed = rules.renames.get(name);
+                        int[] slots = rules.copySlots.get(name);
+                        if (slots != null) {
+                            pendingCopyFrame = frame;
+                            pendingCopySlots = slots;
+                        }
+                        break;
+                    }
+                    default:
+                        if (frame != null && frame.conditionValues != null) {
+                            Integer slot = frame.rules.conditionSlots.get(frame.key);
+                            if (slot != null) {
+                                frame.conditionValues[slot] = input.getText();
+                            }
+                        }
+                        break;
+                }
+                return token;
+            }
+        }
+
+        /**
+         * @return The next token read ahead, or else of the source.
+         */
+        private JsonToken readInput() throws IOException {
+            while (!readAhead.isEmpty()) {
+                JsonParser parser = readAhead.peek();
+                JsonToken token = parser.nextToken();
+                if (token != null) {
+                    input = parser;
+                    delegate = parser;
+                    return token;
+                }
+                parser.close();
+                readAhead.pop();
+            }
+            input = source;
+            delegate = source;
+            return source.nextToken();
+        }
+
+        /**
+         * Skips the value of the current member. Its tokens may come from several parsers, so it cannot use
+         * {@link JsonParser#skipChildren()}.
+         */
+        private void skipValue() throws IOException {
+            int depth = 0;
+            do {
+                JsonToken token = readInput();
+                if (token == null) {
+                    return;
+                }
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+            } while (depth > 0);
+        }
+
+        /**
+         * Reads the value of the current member ahead. An object that a filter drops is skipped with its key; any
+         * other value is read again, from its key, by the next call to {@link #readInput()}.
+         */
+        private void lookAhead(ObjectRules valueRules) throws IOException {
+            TokenBuffer buffer = new TokenBuffer(source);
+            buffer.copyCurrentEventExact(input);
+            if (readInput() == JsonToken.START_OBJECT) {
+                if (readFiltered(valueRules, buffer) == null) {
+                    return;
+                }
+            } else {
+                buffer.copyCurrentEventExact(input);
+            }
+            readAhead.push(buffer.asParser());
+            lookedAhead = true;
+        }
+
+        /**
+         * Appends the object starting at the current input token to {@code buffer}, up to its closing token.
+         *
+         * @return The buffer, or null if a filter drops the object.
+         */
+        private TokenBuffer readFiltered(ObjectRules rules, TokenBuffer buffer) throws IOException {
+            boolean dropped = false;
+            String key = null;
+            int depth = 0;
+            JsonToken token = input.currentToken();
+            while (token != null) {
+                if (!dropped) {
+                    buffer.copyCurrentEventExact(input);
+                }
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    if (--depth == 0) {
+                        break;
+                    }
+                } else if (depth == 1) {
+                    if (token == JsonToken.FIELD_NAME) {
+                        key = input.getCurrentName();
+                    } else if (!dropped && rules.drops(key, input.getText())) {
+                        dropped = true;
+                    }
+                }
+                token = readInput();
+            }
+            return dropped ? null : buffer;
+        }
+
+        private void startCopies(Frame frame, int[] slots, JsonToken token) throws IOException {
+            for (int slot : slots) {
+                if (!frame.rules.copyRules.get(slot).mayApply(frame)) {
+                    continue;
+                }
+                TokenBuffer buffer = new TokenBuffer(source);
+                frame.copies[slot] = buffer;
+                Recorder recorder = new Recorder(buffer);
+                if (!recorder.record(this, token)) {
+                    recorders.add(recorder);
+                }
+            }
+        }
+
+        /**
+         * @return The members to add before the object closes, wrapped in START_OBJECT/END_OBJECT, or null if none.
+         */
+        private TokenBuffer endObject(Frame frame) throws IOException {
+            TokenBuffer added = null;
+            for (EndRule endRule : frame.rules.endRules) {
+                if (!endRule.applies(frame)) {
+                    continue;
+                }
+                JsonTransformRule rule = endRule.rule;
+                TokenBuffer copy = null;
+                if (endRule.copySlot >= 0) {
+                    copy = frame.copies[endRule.copySlot];
+                    if (copy == null) {
+                        continue;
+                    }
+                }
+                if (added == null) {
+                    added = new TokenBuffer(source);
+                    added.writeStartObject();
+                }
+                if (copy == null) {
+                    added.writeStringField(rule.getField(), rule.getValue());
+                } else {
+                    added.writeFieldName(rule.getTarget());
+                    writeCopy(copy, added, rule.getTagField(), rule.getTagValue());
+                }
+            }
+            if (added != null) {
+                added.writeEndObject();
+            }
+            return added;
+        }
+
+        /**
+         * Writes a buffered value, adding the tag member to it if it is an object, or to each object in it if it is
+         * an array. An existing member of that name is replaced.
+         */
+        private static void writeCopy(TokenBuffer copy, JsonGenerator out, String tagField, String tagValue) throws IOException {
+            try (JsonParser parser = copy.asParser()) {
+                JsonToken token = parser.nextToken();
+                int tagDepth = token == JsonToken.START_ARRAY ? 2 : 1;
+                int depth = 0;
+                while (token != null) {
+                    if (tagField != null && depth == tagDepth && token == JsonToken.FIELD_NAME
+                            && tagField.equals(parser.getCurrentName())) {
+                        parser.nextToken();
+                        parser.skipChildren();
+                        token = parser.nextToken();
+                        continue;
+                    }
+                    if (token.isStructStart()) {
+                        depth++;
+                    } else if (token.isStructEnd()) {
+                        if (tagField != null && depth == tagDepth && token == JsonToken.END_OBJECT) {
+                            out.writeStringField(tagField, tagValue);
+                        }
+                        depth--;
+                    }
+                    out.copyCurrentEventExact(parser);
+                    token = parser.nextToken();
+                }
+            }
+        }
+
+        @Override
+        public String currentName() throws IOException {
+            return renamed != null ? renamed : super.currentName();
+        }
+
+        @Override
+        public String getCurrentName() throws IOException {
+            return renamed != null ? renamed : super.getCurrentName();
+        }
+
+        @Override
+        public String getText() throws IOException {
+            return renamed != null ? renamed : super.getText();
+        }
+
+        @Override
+        public int getText(Writer writer) throws IOException {
+            if (renamed != null) {
+                writer.write(renamed);
+                return renamed.length();
+            }
+            return super.getText(writer);
+        }
+
+        @Override
+        public boolean hasTextCharacters() {
+            return renamed == null && super.hasTextCharacters();
+        }
+
+        @Override
+        public char[] getTextCharacters() throws IOException {
+            return renamed != null ? renamed.toCharArray() : super.getTextCharacters();
+        }
+
+        @Override
+        public int getTextLength() throws IOException {
+            return renamed != null ? renamed.length() : super.getTextLength();
+        }
+
+        @Override
+        public int getTextOffset() throws IOException {
+            return renamed != null ? 0 : super.getTextOffset();
+        }
+
+        @Override
+        public String getValueAsString() throws IOException {
+            return renamed != null ? renamed : super.getValueAsString();
+        }
+
+        @Override
+        public String getValueAsString(String defaultValue) throws IOException {
+            return renamed != null ? renamed : super.getValueAsString(defaultValue);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (replay != null) {
+                replay.close();
+            }
+            for (JsonParser parser : readAhead) {
+                parser.close();
+            }
+            source.close();
+        }
+    }
+}
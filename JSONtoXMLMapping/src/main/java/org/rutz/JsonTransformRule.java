@@ -0,0 +1,201 @@
+package org.rutz;
+
+/**
+ * One step of a {@link JsonTransformPipeline}, applied to JSON objects before they are mapped.
+ * <p>
+ * Rules select objects by the key they appear under: {@link #in(String)} with a key such as {@code "members"} selects
+ * the object at that key and the items of an array at that key, {@link #ROOT} selects the top-level object, and
+ * {@link #ANY} (the default) selects every object except the top-level one. Keys are matched as they appear in the
+ * input, before any rename.
+ * <p>
+ * Instances are immutable; the fluent methods return modified copies.
+ */
+public final class JsonTransformRule {
+
+    /**
+     * Selects every object except the top-level one.
+     */
+    public static final String ANY = "*";
+
+    /**
+     * Selects the top-level object.
+     */
+    public static final String ROOT = "$";
+
+    enum Kind {
+        RENAME, REMOVE, INJECT, COPY, FILTER
+    }
+
+    private final Kind kind;
+    private final String selector;
+    private final String field;
+    private final String target;
+    private final String value;
+    private final String whenField;
+    private final String whenValue;
+    private final String tagField;
+    private final String tagValue;
+
+    private JsonTransformRule(Kind kind, String selector, String field, String target, String value,
+                              String whenField, String whenValue, String tagField, String tagValue) {
+        this.kind = kind;
+        this.selector = selector;
+        this.field = field;
+        this.target = target;
+        this.value = value;
+        this.whenField = whenField;
+        this.whenValue = whenValue;
+        this.tagField = tagField;
+        this.tagValue = tagValue;
+    }
+
+    private static JsonTransformRule of(Kind kind, String field, String target, String value) {
+        if (field == null || field.isEmpty()) {
+            throw new IllegalArgumentException("A " + kind + " rule needs a field name.");
+        }
+        return new JsonTransformRule(kind, ANY, field, target, value, null, null, null, null);
+    }
+
+    /**
+     * Renames the key {@code from} to {@code to}.
+     */
+    public static JsonTransformRule rename(String from, String to) {
+        if (to == null || to.isEmpty()) {
+            throw new IllegalArgumentException("Cannot rename '" + from + "' to an empty name.");
+        }
+        return of(Kind.RENAME, from, to, null);
+    }
+
+    /**
+     * Drops the key {@code field} and its value.
+     */
+    public static JsonTransformRule remove(String field) {
+        return of(Kind.REMOVE, field, null, null);
+    }
+
+    /**
+     * Adds {@code field} with the string {@code value} as the last member of the object.
+     */
+    public static JsonTransformRule inject(String field, String value) {
+        return of(Kind.INJECT, field, null, value == null ? "" : value);
+    }
+
+    /**
+     * Adds a copy of the value at {@code from} as {@code to}, after the object's last member.
+     */
+    public static JsonTransformRule copy(String from, String to) {
+        if (to == null || to.isEmpty()) {
+            throw new IllegalArgumentException("Cannot copy '" + from + "' to an empty name.");
+        }
+        return of(Kind.COPY, from, to, null);
+    }
+
+    /**
+     * Drops the selected objects whose scalar member {@code field} has the text {@code value}: an array item is removed
+     * from its array, and an object member is removed with its key. The member may appear anywhere in the object.
+     */
+    public static JsonTransformRule filter(String field, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("A filter on '" + field + "' needs a value to match.");
+        }
+        return of(Kind.FILTER, field, null, value);
+    }
+
+    /**
+     * @param selector A key, {@link #ANY} or {@link #ROOT}.
+     * @return This rule, applied only to the objects selected by {@code selector}.
+     */
+    public JsonTransformRule in(String selector) {
+        if (kind == Kind.FILTER && ROOT.equals(selector)) {
+            throw new IllegalArgumentException("The top-level object cannot be filtered.");
+        }
+        return new JsonTransformRule(kind, selector == null ? ANY : selector, field, target, value, whenField, whenValue, tagField, tagValue);
+    }
+
+    /**
+     * Applies an inject or copy rule only to objects whose scalar member {@code field} has the text {@code value}.
+     * The condition is decided when the object ends, so the member may appear anywhere in it.
+     */
+    public JsonTransformRule when(String field, String value) {
+        if (kind != Kind.INJECT && kind != Kind.COPY) {
+            throw new IllegalArgumentException("Only inject and copy rules can have a condition; renames and removals "
+                    + "are applied as keys are read, and filters are conditions themselves.");
+        }
+        return new JsonTransformRule(kind, selector, this.field, target, this.value, field, value, tagField, tagValue);
+    }
+
+    /**
+     * Adds {@code field} with the string {@code value} to the copied object, or to each object in a copied array,
+     * replacing a member of that name.
+     */
+    public JsonTransformRule tagCopies(String field, String value) {
+        if (kind != Kind.COPY) {
+            throw new IllegalArgumentException("Only copy rules can tag copies.");
+        }
+        return new JsonTransformRule(kind, selector, this.field, target, this.value, whenField, whenValue, field, value);
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    String getSelector() {
+        return selector;
+    }
+
+    /**
+     * @return The key the rule reads: the renamed, removed, injected or copied key, or the member a filter tests.
+     */
+    String getField() {
+        return field;
+    }
+
+    /**
+     * @return The new name of a rename, or the key a copy is written to.
+     */
+    String getTarget() {
+        return target;
+    }
+
+    /**
+     * @return The injected text, or the text a filter drops objects on.
+     */
+    String getValue() {
+        return value;
+    }
+
+    String getWhenField() {
+        return whenField;
+    }
+
+    String getWhenValue() {
+        return whenValue;
+    }
+
+    String getTagField() {
+        return tagField;
+    }
+
+    String getTagValue() {
+        return tagValue;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(kind.name().toLowerCase()).append(' ').append(field);
+        if (target != null) {
+            sb.append(" -> ").append(target);
+        }
+        if (value != null) {
+            sb.append(" = '").append(value).append('\'');
+        }
+        sb.append(" in ").append(selector);
+        if (whenField != null) {
+            sb.append(" when ").append(whenField).append(" = '").append(whenValue).append('\'');
+        }
+        if (tagField != null) {
+            sb.append(" tagging ").append(tagField).append(" = '").append(tagValue).append('\'');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,226 @@
+package org.rutz;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes mappings in a compact binary form ({@code .xmap}), compiled offline from the Excel sheets.
+ * <p>
+ * Loading an artifact needs neither POI nor a workbook parse, so short-lived workers can start without POI on the
+ * classpath. Layout, big-endian:
+ * <pre>
+ *   int    magic "XMAP"
+ *   short  format version
+ *   int    payload length
+ *   int    CRC32 of the payload
+ *   payload:
+ *     int  number of strings, then each string (modified UTF-8, as DataOutput.writeUTF)
+ *     int  number of mappings, then per mapping five string indexes:
+ *          group, API field name, API data type, XML data type, XML path
+ * </pre>
+ * Strings are stored once, since groups, types and path prefixes repeat across rows.
+ * <p>
+ * Compile a sheet with {@code java org.rutz.MappingArtifact my.xlsx my.xmap}, or for all sheets of the build with
+ * the {@code compile-mappings} Maven profile.
+ */
+public class MappingArtifact {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingArtifact.class);
+
+    /**
+     * File extension of compiled mapping artifacts.
+     */
+    public static final String EXTENSION = ".xmap";
+
+    private static final int MAGIC = 0x584D4150; // "XMAP"
+    private static final short VERSION = 1;
+
+    /**
+     * Writes the mappings as an artifact.
+     *
+     * @param mappings The mappings, e.g. as read by {@link ExcelMappingReader}.
+     * @param out      The stream to write to; it is flushed but not closed.
+     */
+    public static void write(List<ExcelMappingReader.XmlMapping> mappings, OutputStream out) throws IOException {
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        int[] indexes = new int[mappings.size() * 5];
+        int i = 0;
+        for (ExcelMappingReader.XmlMapping mapping : mappings) {
+            for (String value : new String[]{mapping.getGroup(), mapping.getApiFieldName(), mapping.getApiDataType(),
+                    mapping.getXmlDataType(), mapping.getXmlPath()}) {
+                String key = value == null ? "" : value;
+                Integer index = stringIndexes.get(key);
+                if (index == null) {
+                    index = strings.size();
+                    stringIndexes.put(key, index);
+                    strings.add(key);
+                }
+                indexes[i++] = index;
+            }
+        }
+
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(strings.size());
+        for (String string : strings) {
+            payload.writeUTF(string);
+        }
+        payload.writeInt(mappings.size());
+        for (int index : indexes) {
+            payload.writeInt(index);
+        }
+        payload.flush();
+        byte[] bytes = payloadBytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeInt(bytes.length);
+        header.writeInt((int) crc.getValue());
+        header.write(bytes);
+        header.flush();
+    }
+
+    /**
+     * Reads an artifact, verifying its header and checksum.
+     *
+     * @param in         The artifact content; it is read up to the end of the artifact but not closed.
+     * @param sourceName Name of the source, used in messages.
+     * @return List of XmlMapping, in the order they were written.
+     * @throws IOException if the content is not a valid artifact of a supported version.
+     */
+    public static List<ExcelMappingReader.XmlMapping> read(InputStream in, String sourceName) throws IOException {
+        ConversionMetrics metrics = XmlBuilder.getMetrics();
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+        List<ExcelMappingReader.XmlMapping> mappings = readArtifact(in, sourceName);
+        if (metrics.isEnabled()) {
+            metrics.recordPhase(ConversionMetrics.Phase.LOAD, System.nanoTime() - start);
+        }
+        return mappings;
+    }
+
+    private static List<ExcelMappingReader.XmlMapping> readArtifact(InputStream in, String sourceName) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a mapping artifact: " + sourceName);
+        }
+        short version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapping artifact version " + version + " in " + sourceName
+                    + "; expected " + VERSION + ". Recompile it from the Excel sheet.");
+        }
+        int length = data.readInt();
+        int expectedCrc = data.readInt();
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Checksum mismatch in mapping artifact " + sourceName + "; the file is corrupt.");
+        }
+
+        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(bytes));
+        String[] strings = new String[payload.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = payload.readUTF();
+        }
+        int count = payload.readInt();
+        List<ExcelMappingReader.XmlMapping> mappings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mappings.add(new ExcelMappingReader.XmlMapping(strings[payload.readInt()], strings[payload.readInt()],
+                    strings[payload.readInt()], strings[payload.readInt()], strings[payload.readInt()]));
+        }
+        logger.debug("Read {} mappings from artifact '{}'.", count, sourceName);
+        return mappings;
+    }
+
+    /**
+     * Reads an artifact from the classpath.
+     *
+     * @param resourceName Name of the resource (e.g., "my.xmap").
+     */
+    public static List<ExcelMappingReader.XmlMapping> readResource(String resourceName) throws IOException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        try (InputStream is = classLoader.getResourceAsStream(resourceName)) {
+            if (is == null) {
+                throw new IllegalArgumentException("Resource not found: " + resourceName);
+            }
+            return read(is, resourceName);
+        }
+    }
+
+    /**
+     * Reads an artifact from a file.
+     */
+    public static List<ExcelMappingReader.XmlMapping> readFile(Path path) throws IOException {
+        try (InputStream is = Files.newInputStream(path)) {
+            return read(is, path.toString());
+        }
+    }
+
+    /**
+     * Compiles Excel mapping sheets into artifacts.
+     * <p>
+     * Usage: {@code MappingArtifact <sheet.xlsx> <out.xmap>} for a single sheet, or
+     * {@code MappingArtifact --dir <outputDir> <sheet.xlsx>...} to write {@code <name>.xmap} for each sheet.
+     * Sheets are read from the filesystem if the file exists, otherwise from the classpath.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && "--dir".equals(args[0])) {
+            File dir = new File(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                String name = new File(args[i]).getName().replaceFirst("\\.xlsx$", "");
+                compile(args[i], new File(dir, name + EXTENSION).toPath());
+            }
+        } else if (args.length == 2) {
+            compile(args[0], Paths.get(args[1]));
+        } else {
+            System.err.println("Usage: MappingArtifact <sheet.xlsx> <out.xmap>");
+            System.err.println("       MappingArtifact --dir <outputDir> <sheet.xlsx>...");
+            System.exit(2);
+        }
+    }
+
+    private static void compile(String sheet, Path target) throws Exception {
+        List<ExcelMappingReader.XmlMapping> mappings;
+        File file = new File(sheet);
+        if (file.isFile()) {
+            try (InputStream is = new FileInputStream(file)) {
+                mappings = ExcelMappingReader.readMappings(is, sheet);
+            }
+        } else {
+            mappings = ExcelMappingReader.readMappings(sheet);
+        }
+        // Fail the build here rather than at worker startup
+        MappingPlan.compile(mappings);
+
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(target)) {
+            write(mappings, out);
+        }
+        logger.info("Compiled {} mappings from '{}' to '{}' ({} bytes).", mappings.size(), sheet, target, Files.size(target));
+    }
+}
@@ -0,0 +1,684 @@
+package org.rutz;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * MappingPlan is the compiled form of a list of {@link ExcelMappingReader.XmlMapping}s.
+ * <p>
+ * All string work needed to execute a mapping sheet (splitting XML paths, grouping mappings,
+ * resolving the group tree, normalizing data types and encoding element names) is done once in {@link #compile(List)}.
+ * A plan is immutable and can be shared between threads and reused for any number of
+ * {@link XmlBuilder#buildXml(MappingPlan, Object, String)} calls.
+ */
+public final class MappingPlan {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingPlan.class);
+
+    private final String rootElementName;
+    private final XmlName rootXmlName;
+    private final List<GroupPlan> groups;
+    private final List<GroupPlan> rootGroups;
+    private final List<PathNode> rootNodes;
+
+    private MappingPlan(String rootElementName, List<GroupPlan> groups, List<GroupPlan> rootGroups) {
+        this.rootElementName = rootElementName;
+        this.rootXmlName = XmlName.of(rootElementName);
+        this.groups = Collections.unmodifiableList(groups);
+        this.rootGroups = Collections.unmodifiableList(rootGroups);
+        this.rootNodes = buildPathTree(rootGroups);
+    }
+
+    /**
+     * Compiles the given mappings into an execution plan.
+     * <p>
+     * The root element is the first segment of the first mapping's xmlPath. Groups with a {@code List<...>} mapping are
+     * collections whose items are written at that mapping's path; groups without one describe the root object, and
+     * their fields are written directly under the root element.
+     *
+     * @param mappings List of XmlMapping defining the field mappings.
+     * @return The compiled MappingPlan.
+     * @throws IllegalArgumentException if no mappings are provided.
+     */
+    public static MappingPlan compile(List<ExcelMappingReader.XmlMapping> mappings) {
+        if (mappings == null || mappings.isEmpty()) {
+            throw new IllegalArgumentException("No mappings provided.");
+        }
+        logger.info("Compiling mapping plan from {} mappings.", mappings.size());
+        ConversionMetrics metrics = XmlBuilder.getMetrics();
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+
+        // Determine root element from the first mapping
+        String rootPath = splitPath(mappings.get(0).getXmlPath())[0];
+        logger.debug("Determined root path: {}", rootPath);
+
+        Map<String, List<ExcelMappingReader.XmlMapping>> groupMap = groupMappingsByGroup(mappings);
+        logger.debug("Grouped mappings by group. Total groups: {}", groupMap.size());
+
+        // A group without a collection mapping describes the root object itself (e.g. Company)
+        List<GroupPlan> groups = new ArrayList<>();
+        for (Map.Entry<String, List<ExcelMappingReader.XmlMapping>> entry : groupMap.entrySet()) {
+            Optional<ExcelMappingReader.XmlMapping> collectionMapping = findCollectionMapping(entry.getValue());
+            GroupPlan groupPlan = collectionMapping.isPresent()
+                    ? compileCollectionGroup(entry.getKey(), entry.getValue(), collectionMapping.get(), rootPath)
+                    : compileSingleObjectGroup(entry.getKey(), entry.getValue());
+            if (groupPlan != null) {
+                groups.add(groupPlan);
+            }
+        }
+
+        List<GroupPlan> rootGroups = linkGroupTree(groups);
+        groups = treeOrder(groups, rootGroups);
+        MappingPlan plan = new MappingPlan(rootPath, groups, rootGroups);
+        if (metrics.isEnabled()) {
+            metrics.recordPhase(ConversionMetrics.Phase.PLAN, System.nanoTime() - start);
+        }
+        logger.info("Mapping plan compiled. Root element: <{}>, groups: {}", rootPath, groups.size());
+        return plan;
+    }
+
+    /**
+     * Groups mappings by their "Group" column, keeping groups in the order they first appear in the sheet.
+     */
+    private static Map<String, List<ExcelMappingReader.XmlMapping>> groupMappingsByGroup(List<ExcelMappingReader.XmlMapping> mappings) {
+        Map<String, List<ExcelMappingReader.XmlMapping>> grouped = new LinkedHashMap<>();
+        for (ExcelMappingReader.XmlMapping mapping : mappings) {
+            grouped.computeIfAbsent(mapping.getGroup(), k -> new ArrayList<>()).add(mapping);
+        }
+        return grouped;
+    }
+
+    /**
+     * @return The mapping of the List field whose items are the group's elements, if the group has one.
+     */
+    private static Optional<ExcelMappingReader.XmlMapping> findCollectionMapping(List<ExcelMappingReader.XmlMapping> groupMappings) {
+        for (ExcelMappingReader.XmlMapping mapping : groupMappings) {
+            if (mapping.getApiDataType().startsWith("List<")) {
+                return Optional.of(mapping);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Compiles a group that is a single object (e.g., Company) whose fields are written under the root element.
+     */
+    private static GroupPlan compileSingleObjectGroup(String groupName, List<ExcelMappingReader.XmlMapping> groupMappings) {
+        List<FieldPlan> fields = new ArrayList<>();
+        for (ExcelMappingReader.XmlMapping mapping : groupMappings) {
+            String[] segments = splitPath(mapping.getXmlPath());
+            fields.add(new FieldPlan(mapping, segments[segments.length - 1]));
+        }
+        return new GroupPlan(groupName, true, null, new String[0], null, fields);
+    }
+
+    /**
+     * Compiles a group that is a collection (e.g., Branch, Team, Member).
+     * Returns null if the group cannot be executed; the reason is logged once here instead of on every conversion.
+     */
+    private static GroupPlan compileCollectionGroup(String groupName, List<ExcelMappingReader.XmlMapping> groupMappings,
+                                                    ExcelMappingReader.XmlMapping collectionMapping, String rootPath) {
+        String basePath = collectionMapping.getXmlPath();
+        if (!basePath.startsWith(rootPath + "/")) {
+            logger.warn("Group base path '{}' does not start with root path '{}'. Skipping group '{}'.", basePath, rootPath, groupName);
+            return null;
+        }
+
+        String[] path = splitPath(basePath.substring(rootPath.length() + 1));
+
+        // Only mappings that are direct children of the group's base path become fields of its items
+        String fieldPrefix = basePath + "/";
+        List<FieldPlan> fields = new ArrayList<>();
+        for (ExcelMappingReader.XmlMapping subMapping : groupMappings) {
+            String subXmlPath = subMapping.getXmlPath();
+            if (!subXmlPath.startsWith(fieldPrefix)) {
+                continue;
+            }
+            String subRelativePath = subXmlPath.substring(fieldPrefix.length());
+            if (subRelativePath.contains("/")) {
+                continue;
+            }
+            fields.add(new FieldPlan(subMapping, subRelativePath));
+        }
+
+        return new GroupPlan(groupName, false, basePath, path, path[path.length - 1], fields);
+    }
+
+    /**
+     * Links collection groups to the group whose base path is their closest ancestor, and builds the path tree below
+     * the items of every group.
+     *
+     * @return The groups that have no parent group, i.e. the children of the root element.
+     */
+    private static List<GroupPlan> linkGroupTree(List<GroupPlan> groups) {
+        List<GroupPlan> byDepth = new ArrayList<>();
+        for (GroupPlan group : groups) {
+            if (!group.isSingleObject()) {
+                byDepth.add(group);
+            }
+        }
+        // List.sort is stable, so siblings keep their sheet order
+        byDepth.sort(Comparator.comparingInt(g -> g.path.length));
+
+        List<GroupPlan> rootGroups = new ArrayList<>();
+        for (int i = 0; i < byDepth.size(); i++) {
+            GroupPlan group = byDepth.get(i);
+            GroupPlan parent = null;
+            for (int j = i - 1; j >= 0 && parent == null; j--) {
+                GroupPlan candidate = byDepth.get(j);
+                if (candidate.path.length < group.path.length && group.basePath.startsWith(candidate.basePath + "/")) {
+                    parent = candidate;
+                }
+            }
+            if (parent == null) {
+                group.relativePath = group.pathView;
+                group.relativeXmlPath = group.xmlPathView;
+                rootGroups.add(group);
+            } else {
+                group.parent = parent;
+                group.relativePath = asList(Arrays.copyOfRange(group.path, parent.path.length, group.path.length));
+                group.relativeXmlPath = group.xmlPathView.subList(parent.path.length, group.path.length);
+                parent.children.add(group);
+            }
+        }
+        for (GroupPlan group : byDepth) {
+            group.childNodes = buildPathTree(group.children);
+        }
+        return rootGroups;
+    }
+
+    /**
+     * Merges the relative paths of sibling groups into a tree, so that groups sharing leading segments (e.g.
+     * [dept, members] and [dept, projects]) are written into one wrapper element per object on the shared segment.
+     */
+    private static List<PathNode> buildPathTree(List<GroupPlan> siblings) {
+        List<PathNode> roots = new ArrayList<>();
+        for (GroupPlan group : siblings) {
+            List<PathNode> level = roots;
+            int last = group.relativePath.size() - 1;
+            for (int i = 0; i <= last; i++) {
+                PathNode node = findNode(level, group.relativePath.get(i));
+                if (node == null) {
+                    node = new PathNode(group, i);
+                    level.add(node);
+                }
+                if (i == last) {
+                    node.groups.add(group);
+                } else {
+                    level = node.children;
+                }
+            }
+        }
+        return Collections.unmodifiableList(roots);
+    }
+
+    private static PathNode findNode(List<PathNode> nodes, String segment) {
+        for (PathNode node : nodes) {
+            if (node.segment.equals(segment)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Orders groups as they are executed: single-object groups in sheet order, then the collection groups depth
+     * first along the group tree, siblings in sheet order.
+     */
+    private static List<GroupPlan> treeOrder(List<GroupPlan> groups, List<GroupPlan> rootGroups) {
+        List<GroupPlan> ordered = new ArrayList<>(groups.size());
+        for (GroupPlan group : groups) {
+            if (group.isSingleObject()) {
+                ordered.add(group);
+            }
+        }
+        Deque<GroupPlan> pending = new ArrayDeque<>();
+        for (int i = rootGroups.size() - 1; i >= 0; i--) {
+            pending.push(rootGroups.get(i));
+        }
+        while (!pending.isEmpty()) {
+            GroupPlan group = pending.pop();
+            ordered.add(group);
+            for (int i = group.children.size() - 1; i >= 0; i--) {
+                pending.push(group.children.get(i));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Returns a copy of this plan whose field reads use extractors generated for the classes reachable from
+     * {@code rootType} (see {@link BeanExtractors}). Types are resolved from the declared field types, e.g.
+     * {@code List<Branch> branches} binds the Branch group to {@code Company.Branch}. Objects whose runtime class
+     * differs from the bound class, and fields that cannot be bound, keep using the reflective {@link FieldAccessors}.
+     *
+     * @param rootType The class of the API response objects this plan will be executed against.
+     * @return A new plan using generated extractors where possible.
+     */
+    public MappingPlan withGeneratedExtractors(Class<?> rootType) {
+        logger.info("Binding mapping plan to generated extractors for root class '{}'.", rootType.getName());
+        List<GroupPlan> boundGroups = new ArrayList<>();
+        for (GroupPlan group : groups) {
+            int depth = group.path.length;
+            Class<?>[] pathTypes = new Class<?>[depth];
+            FieldAccessor[] pathAccessors = new FieldAccessor[depth];
+            Class<?> itemType = rootType;
+            for (int i = 0; i < depth && itemType != null; i++) {
+                pathTypes[i] = itemType;
+                pathAccessors[i] = BeanExtractors.forField(itemType, group.path[i]);
+                itemType = declaredItemType(itemType, group.path[i]);
+            }
+
+            List<FieldPlan> boundFields = new ArrayList<>();
+            for (FieldPlan field : group.fields) {
+                FieldAccessor accessor = itemType == null ? null : BeanExtractors.forField(itemType, field.apiFieldName);
+                boundFields.add(accessor == null ? field : new FieldPlan(field, itemType, accessor));
+            }
+            if (itemType == null) {
+                logger.warn("Cannot resolve item class of group '{}'. It will use reflective access.", group.name);
+            }
+            boundGroups.add(new GroupPlan(group, pathTypes, pathAccessors, boundFields));
+        }
+        List<GroupPlan> rootGroups = linkGroupTree(boundGroups);
+        return new MappingPlan(rootElementName, boundGroups, rootGroups);
+    }
+
+    /**
+     * Resolves the class of the objects reached through a field: the element type for {@code List<T>} fields,
+     * the field type otherwise, or null if it cannot be determined statically.
+     */
+    private static Class<?> declaredItemType(Class<?> ownerType, String fieldName) {
+        Field field = FieldAccessors.findField(ownerType, fieldName);
+        if (field == null) {
+            return null;
+        }
+        Type type = field.getGenericType();
+        if (type instanceof Class) {
+            return Collection.class.isAssignableFrom((Class<?>) type) ? null : (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (arguments.length == 1 && arguments[0] instanceof Class) {
+                return (Class<?>) arguments[0];
+            }
+        }
+        return null;
+    }
+
+    private static String[] splitPath(String xmlPath) {
+        return xmlPath.split("/");
+    }
+
+    private static List<String> asList(String[] segments) {
+        return Collections.unmodifiableList(Arrays.asList(segments));
+    }
+
+    private static List<XmlName> xmlNames(String[] segments) {
+        XmlName[] names = new XmlName[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            names[i] = XmlName.of(segments[i]);
+        }
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    // Getters
+    public String getRootElementName() {
+        return rootElementName;
+    }
+
+    /**
+     * @return The root element name with its tags pre-encoded.
+     */
+    public XmlName getRootXmlName() {
+        return rootXmlName;
+    }
+
+    /**
+     * @return All executable groups, in execution order: single-object groups, then the group tree depth first.
+     * Siblings keep the order of their first row in the sheet, so output order depends only on the mappings.
+     */
+    public List<GroupPlan> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return The collection groups directly below the root element; nested groups are reachable through
+     * {@link GroupPlan#getChildren()}.
+     */
+    public List<GroupPlan> getRootGroups() {
+        return rootGroups;
+    }
+
+    /**
+     * @return The path tree of {@link #getRootGroups()}: one node per distinct first segment of their paths.
+     */
+    public List<PathNode> getRootNodes() {
+        return rootNodes;
+    }
+
+    @Override
+    public String toString() {
+        return "MappingPlan{" +
+                "rootElementName='" + rootElementName + '\'' +
+                ", groups=" + groups +
+                '}';
+    }
+
+    /**
+     * A compiled mapping group. Single-object groups write their fields directly under the root element;
+     * collection groups write one element per item found at {@link #getPath()}.
+     */
+    public static final class GroupPlan {
+        private final String name;
+        private final boolean singleObject;
+        private final String basePath;
+        private final String[] path;
+        private final List<String> pathView;
+        private final List<XmlName> xmlPathView;
+        private final String elementName;
+        private final XmlName xmlName;
+        private final List<FieldPlan> fields;
+        private final List<GroupPlan> children = new ArrayList<>();
+        private final List<GroupPlan> childrenView = Collections.unmodifiableList(children);
+        // Bound by withGeneratedExtractors; entries are null where no generated extractor applies
+        private final Class<?>[] pathTypes;
+        private final FieldAccessor[] pathAccessors;
+        // Assigned once while the plan is being compiled, before it is published
+        private GroupPlan parent;
+        private List<String> relativePath = Collections.emptyList();
+        private List<XmlName> relativeXmlPath = Collections.emptyList();
+        private List<PathNode> childNodes = Collections.emptyList();
+
+        private GroupPlan(String name, boolean singleObject, String basePath, String[] path, String elementName,
+                          List<FieldPlan> fields) {
+            this.name = name;
+            this.singleObject = singleObject;
+            this.basePath = basePath;
+            this.path = path;
+            this.pathView = asList(path);
+            this.xmlPathView = xmlNames(path);
+            this.elementName = elementName;
+            this.xmlName = elementName != null ? XmlName.of(elementName) : null;
+            this.fields = Collections.unmodifiableList(fields);
+            this.pathTypes = new Class<?>[path.length];
+            this.pathAccessors = new FieldAccessor[path.length];
+        }
+
+        private GroupPlan(GroupPlan source, Class<?>[] pathTypes, FieldAccessor[] pathAccessors, List<FieldPlan> fields) {
+            this.name = source.name;
+            this.singleObject = source.singleObject;
+            this.basePath = source.basePath;
+            this.path = source.path;
+            this.pathView = source.pathView;
+            this.xmlPathView = source.xmlPathView;
+            this.elementName = source.elementName;
+            this.xmlName = source.xmlName;
+            this.fields = Collections.unmodifiableList(fields);
+            this.pathTypes = pathTypes;
+            this.pathAccessors = pathAccessors;
+        }
+
+        /**
+         * Returns the accessor for segment {@code index} of {@link #getPath()} on objects of the given class.
+         */
+        public FieldAccessor pathAccessorFor(int index, Class<?> type) {
+            return type == pathTypes[index] && pathAccessors[index] != null
+                    ? pathAccessors[index]
+                    : FieldAccessors.forField(type, path[index]);
+        }
+
+        /**
+         * Returns the accessor for segment {@code index} of {@link #getRelativePath()} on objects of the given class.
+         */
+        public FieldAccessor relativePathAccessorFor(int index, Class<?> type) {
+            return pathAccessorFor(path.length - relativePath.size() + index, type);
+        }
+
+        // Getters
+        public String getName() {
+            return name;
+        }
+
+        public boolean isSingleObject() {
+            return singleObject;
+        }
+
+        /**
+         * @return The field names leading from the API response to this group's items, e.g. [branches, teams].
+         */
+        public List<String> getPath() {
+            return pathView;
+        }
+
+        /**
+         * @return The element name written for each item of a collection group.
+         */
+        public String getElementName() {
+            return elementName;
+        }
+
+        /**
+         * @return {@link #getElementName()} with its tags pre-encoded, or null for single-object groups.
+         */
+        public XmlName getXmlName() {
+            return xmlName;
+        }
+
+        public List<FieldPlan> getFields() {
+            return fields;
+        }
+
+        /**
+         * @return The closest enclosing collection group, or null if this group sits directly below the root element.
+         */
+        public GroupPlan getParent() {
+            return parent;
+        }
+
+        /**
+         * @return The field names leading from an item of the parent group (or the API response) to this group's items.
+         */
+        public List<String> getRelativePath() {
+            return relativePath;
+        }
+
+        /**
+         * @return The element names written for the segments of {@link #getRelativePath()}, with their tags pre-encoded.
+         */
+        public List<XmlName> getRelativeXmlPath() {
+            return relativeXmlPath;
+        }
+
+        public List<GroupPlan> getChildren() {
+            return childrenView;
+        }
+
+        /**
+         * @return The path tree of {@link #getChildren()}, followed from each item of this group.
+         */
+        public List<PathNode> getChildNodes() {
+            return childNodes;
+        }
+
+        @Override
+        public String toString() {
+            return "GroupPlan{" +
+                    "name='" + name + '\'' +
+                    ", path=" + pathView +
+                    ", fields=" + fields +
+                    '}';
+        }
+    }
+
+    /**
+     * One segment in the merged relative paths of sibling groups. The value found at {@link #getSegment()} holds the
+     * items of {@link #getGroups()}, and the objects on which the paths of {@link #getChildren()} continue; those are
+     * written inside one {@link #getXmlName()} element per object.
+     * <p>
+     * Relative paths of sibling groups never end on each other's intermediate segments (the shorter group would be
+     * the parent), so a node has either groups or children, except when several groups share one base path.
+     */
+    public static final class PathNode {
+        private final GroupPlan group;
+        private final int index;
+        private final String segment;
+        private final XmlName xmlName;
+        // Filled while the plan is being compiled, before it is published
+        private final List<GroupPlan> groups = new ArrayList<>();
+        private final List<PathNode> children = new ArrayList<>();
+        private final List<GroupPlan> groupsView = Collections.unmodifiableList(groups);
+        private final List<PathNode> childrenView = Collections.unmodifiableList(children);
+
+        private PathNode(GroupPlan group, int index) {
+            this.group = group;
+            this.index = index;
+            this.segment = group.relativePath.get(index);
+            this.xmlName = group.relativeXmlPath.get(index);
+        }
+
+        /**
+         * Returns the accessor for {@link #getSegment()} on objects of the given class.
+         */
+        public FieldAccessor accessorFor(Class<?> type) {
+            return group.relativePathAccessorFor(index, type);
+        }
+
+        /**
+         * @return The first group whose path runs through this node; skipped values on the node are counted for it.
+         */
+        public GroupPlan getGroup() {
+            return group;
+        }
+
+        /**
+         * @return The field name read at this node.
+         */
+        public String getSegment() {
+            return segment;
+        }
+
+        /**
+         * @return The wrapper element written for each object when the node has children.
+         */
+        public XmlName getXmlName() {
+            return xmlName;
+        }
+
+        /**
+         * @return The groups whose items are the values at this node.
+         */
+        public List<GroupPlan> getGroups() {
+            return groupsView;
+        }
+
+        public List<PathNode> getChildren() {
+            return childrenView;
+        }
+
+        @Override
+        public String toString() {
+            return "PathNode{" +
+                    "segment='" + segment + '\'' +
+                    ", groups=" + groups.size() +
+                    ", children=" + children +
+                    '}';
+        }
+    }
+
+    /**
+     * A compiled field mapping: reads {@link #getApiFieldName()} from an item and writes it as {@link #getElementName()}.
+     */
+    public static final class FieldPlan {
+        private final String apiFieldName;
+        private final String elementName;
+        private final XmlName xmlName;
+        private final String xmlDataType;
+        private final ValueConverter converter;
+        private final boolean list;
+        // Bound by withGeneratedExtractors, null otherwise
+        private final Class<?> boundType;
+        private final FieldAccessor boundAccessor;
+
+        private FieldPlan(ExcelMappingReader.XmlMapping mapping, String elementName) {
+            this.apiFieldName = mapping.getApiFieldName();
+            this.elementName = elementName;
+            this.xmlName = XmlName.of(elementName);
+            this.xmlDataType = ValueConverters.normalize(mapping.getXmlDataType());
+            this.converter = ValueConverters.forType(xmlDataType);
+            this.list = mapping.getApiDataType().startsWith("List<");
+            this.boundType = null;
+            this.boundAccessor = null;
+        }
+
+        private FieldPlan(FieldPlan source, Class<?> boundType, FieldAccessor boundAccessor) {
+            this.apiFieldName = source.apiFieldName;
+            this.elementName = source.elementName;
+            this.xmlName = source.xmlName;
+            this.xmlDataType = source.xmlDataType;
+            this.converter = source.converter;
+            this.list = source.list;
+            this.boundType = boundType;
+            this.boundAccessor = boundAccessor;
+        }
+
+        /**
+         * Returns the accessor for this field on objects of the given class: the generated one if the plan was bound
+         * to that exact class, the cached reflective one otherwise.
+         */
+        public FieldAccessor accessorFor(Class<?> type) {
+            return type == boundType ? boundAccessor : FieldAccessors.forField(type, apiFieldName);
+        }
+
+        // Getters
+        public String getApiFieldName() {
+            return apiFieldName;
+        }
+
+        public String getElementName() {
+            return elementName;
+        }
+
+        /**
+         * @return {@link #getElementName()} with its tags pre-encoded.
+         */
+        public XmlName getXmlName() {
+            return xmlName;
+        }
+
+        /**
+         * @return The XML data type, with its name normalized to lower case.
+         */
+        public String getXmlDataType() {
+            return xmlDataType;
+        }
+
+        /**
+         * @return The converter for {@link #getXmlDataType()}, resolved when the plan was compiled.
+         */
+        public ValueConverter getConverter() {
+            return converter;
+        }
+
+        /**
+         * @return true if the API field is a List whose items are each written as a separate element.
+         */
+        public boolean isList() {
+            return list;
+        }
+
+        @Override
+        public String toString() {
+            return "FieldPlan{" +
+                    "apiFieldName='" + apiFieldName + '\'' +
+                    ", elementName='" + elementName + '\'' +
+                    ", xmlDataType='" + xmlDataType + '\'' +
+                    ", list=" + list +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package org.rutz;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches parsed mapping sheets and their compiled {@link MappingPlan}s, so conversions never open a workbook.
+ * <p>
+ * A source is either a classpath resource ({@code classpath:my.xlsx}, or a plain name such as {@code my.xlsx} that is
+ * not an existing file) or a filesystem path ({@code file:/etc/mappings/my.xlsx}, or any existing file). Sources that
+ * live on the filesystem, including classpath resources in an exploded directory, are checked for changes in the
+ * background and re-read when their modification time or size changes. The new version replaces the old one in a
+ * single step, and only if its content hash differs; a sheet that fails to parse leaves the previous version in place
+ * and is not read again until it changes.
+ * <p>
+ * Sources ending in {@code .xmap} are read as compiled {@link MappingArtifact}s, everything else as Excel workbooks.
+ * <p>
+ * When more than {@code maxEntries} sources are cached, the least recently used one is evicted.
+ */
+public class MappingRegistry implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingRegistry.class);
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final String FILE_PREFIX = "file:";
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final ScheduledExecutorService reloader;
+
+    /**
+     * Creates a registry holding up to 64 sheets, checking for changes every 5 seconds.
+     */
+    public MappingRegistry() {
+        this(64, Duration.ofSeconds(5));
+    }
+
+    /**
+     * @param maxEntries     Maximum number of cached sources.
+     * @param reloadInterval How often filesystem sources are checked for changes; null or zero disables reloading.
+     */
+    public MappingRegistry(int maxEntries, Duration reloadInterval) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1, was " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        if (reloadInterval == null || reloadInterval.isZero() || reloadInterval.isNegative()) {
+            this.reloader = null;
+        } else {
+            this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mapping-registry-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = reloadInterval.toMillis();
+            this.reloader.scheduleWithFixedDelay(this::reloadChanged, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Loads the given sources now, e.g. at startup, so the first conversion does not pay for parsing.
+     */
+    public void preload(String... sources) throws Exception {
+        for (String source : sources) {
+            get(source);
+        }
+    }
+
+    /**
+     * @return The compiled plan of the source's current version.
+     */
+    public MappingPlan getPlan(String source) throws Exception {
+        return get(source).getPlan();
+    }
+
+    /**
+     * @return The mappings of the source's current version, unmodifiable.
+     */
+    public List<ExcelMappingReader.XmlMapping> getMappings(String source) throws Exception {
+        return get(source).getMappings();
+    }
+
+    /**
+     * Returns the current version of the source, reading it on first access.
+     *
+     * @param source A classpath resource or file, see the class description.
+     * @return The cached entry.
+     * @throws Exception if the source is not cached yet and cannot be read or compiled.
+     */
+    public Entry get(String source) throws Exception {
+        Slot slot = slots.get(source);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(source, key -> new Slot(resolve(key)));
+            evictIfNeeded();
+        }
+        slot.lastAccess = System.nanoTime();
+        Entry entry = slot.entry;
+        return entry != null ? entry : slot.loadIfAbsent();
+    }
+
+    /**
+     * Drops the cached version of the source; the next access reads it again.
+     */
+    public void invalidate(String source) {
+        slots.remove(source);
+    }
+
+    /**
+     * @return The number of cached sources.
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Stops background reloading. Cached entries stay readable.
+     */
+    @Override
+    public void close() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks every cached filesystem source and swaps in a new version when the file has changed.
+     */
+    void reloadChanged() {
+        for (Slot slot : slots.values()) {
+            try {
+                slot.reloadIfChanged();
+            } catch (Exception e) {
+                // The stack trace once per broken streak; the file is not tried again until it changes
+                if (slot.failureLogged) {
+                    logger.warn("Failed to reload mappings from '{}', keeping the previous version: {}",
+                            slot.source.name, e.getMessage());
+                    logger.debug("Reload failure of mappings '{}'", slot.source.name, e);
+                } else {
+                    logger.warn("Failed to reload mappings from '{}', keeping the previous version: {}",
+                            slot.source.name, e.getMessage(), e);
+                    slot.failureLogged = true;
+                }
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        while (slots.size() > maxEntries) {
+            Map.Entry<String, Slot> eldest = null;
+            for (Map.Entry<String, Slot> candidate : slots.entrySet()) {
+                if (eldest == null || candidate.getValue().lastAccess < eldest.getValue().lastAccess) {
+                    eldest = candidate;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            if (slots.remove(eldest.getKey(), eldest.getValue())) {
+                logger.debug("Evicted mappings '{}' from the registry.", eldest.getKey());
+            }
+        }
+    }
+
+    private static Source resolve(String source) {
+        if (source.startsWith(FILE_PREFIX)) {
+            return Source.file(source, Paths.get(source.substring(FILE_PREFIX.length())));
+        }
+        if (!source.startsWith(CLASSPATH_PREFIX)) {
+            Path path = Paths.get(source);
+            if (Files.isRegularFile(path)) {
+                return Source.file(source, path);
+            }
+        }
+        String resource = source.startsWith(CLASSPATH_PREFIX) ? source.substring(CLASSPATH_PREFIX.length()) : source;
+        return Source.classpath(source, resource);
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * One parsed and compiled version of a mapping source.
+     */
+    public static final class Entry {
+        private final String source;
+        private final List<ExcelMappingReader.XmlMapping> mappings;
+        private final MappingPlan plan;
+        private final String contentHash;
+        private final long lastModified;
+        private final long size;
+        private final Instant loadedAt;
+
+        private Entry(String source, List<ExcelMappingReader.XmlMapping> mappings, MappingPlan plan,
+                      String contentHash, long lastModified, long size) {
+            this.source = source;
+            this.mappings = mappings;
+            this.plan = plan;
+            this.contentHash = contentHash;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.loadedAt = Instant.now();
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public List<ExcelMappingReader.XmlMapping> getMappings() {
+            return mappings;
+        }
+
+        public MappingPlan getPlan() {
+            return plan;
+        }
+
+        /**
+         * @return Hex SHA-256 of the workbook bytes this version was read from.
+         */
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        /**
+         * @return Modification time of the file in epoch millis, or 0 for sources that are not files.
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public Instant getLoadedAt() {
+            return loadedAt;
+        }
+    }
+
+    /**
+     * Where a source's bytes come from. {@code path} is null for resources that cannot change, e.g. inside a jar.
+     */
+    private static final class Source {
+        private final String name;
+        private final String resource;
+        private final Path path;
+
+        private Source(String name, String resource, Path path) {
+            this.name = name;
+            this.resource = resource;
+            this.path = path;
+        }
+
+        static Source file(String name, Path path) {
+            return new Source(name, null, path);
+        }
+
+        static Source classpath(String name, String resource) {
+            URL url = Thread.currentThread().getContextClassLoader().getResource(resource);
+            Path path = null;
+            if (url != null && "file".equals(url.getProtocol())) {
+                try {
+                    path = Paths.get(url.toURI());
+                } catch (URISyntaxException e) {
+                    logger.debug("Cannot watch resource '{}' for changes: {}", resource, e.getMessage());
+                }
+            }
+            return new Source(name, resource, path);
+        }
+
+        boolean isArtifact() {
+            return name.endsWith(MappingArtifact.EXTENSION);
+        }
+
+        byte[] read() throws IOException {
+            if (path != null) {
+                return Files.readAllBytes(path);
+            }
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            try (InputStream is = classLoader.getResourceAsStream(resource)) {
+                if (is == null) {
+                    throw new IllegalArgumentException("Resource not found: " + resource);
+                }
+                return is.readAllBytes();
+            }
+        }
+    }
+
+    /**
+     * Holds the current version of one source. Readers see either the old or the new entry, never a partial one.
+     */
+    private static final class Slot {
+        private final Source source;
+        private volatile Entry entry;
+        private volatile long lastAccess = System.nanoTime();
+        // Modification time and size of the last version that failed to load, so it is not parsed again every poll
+        private long failedModified = -1;
+        private long failedSize = -1;
+        private volatile boolean failureLogged;
+
+        Slot(Source source) {
+            this.source = source;
+        }
+
+        synchronized Entry loadIfAbsent() throws Exception {
+            if (entry == null) {
+                entry = load(null);
+            }
+            return entry;
+        }
+
+        synchronized void reloadIfChanged() throws Exception {
+            Entry current = entry;
+            if (current == null || source.path == null) {
+                return;
+            }
+            long lastModified = Files.getLastModifiedTime(source.path).toMillis();
+            long size = Files.size(source.path);
+            if ((lastModified == current.lastModified && size == current.size)
+                    || (lastModified == failedModified && size == failedSize)) {
+                return;
+            }
+            try {
+                entry = load(current);
+            } catch (Exception e) {
+                failedModified = lastModified;
+                failedSize = size;
+                throw e;
+            }
+            failedModified = -1;
+            failedSize = -1;
+            failureLogged = false;
+        }
+
+        /**
+         * Reads the source; if its content matches {@code previous}, the previous mappings and plan are reused.
+         */
+        private Entry load(Entry previous) throws Exception {
+            long lastModified = source.path != null ? Files.getLastModifiedTime(source.path).toMillis() : 0L;
+            byte[] content = source.read();
+            String hash = sha256(content);
+            if (previous != null && previous.contentHash.equals(hash)) {
+                logger.debug("Mappings '{}' touched but unchanged.", source.name);
+                return new Entry(source.name, previous.mappings, previous.plan, hash, lastModified, content.length);
+            }
+            List<ExcelMappingReader.XmlMapping> mappings = Collections.unmodifiableList(source.isArtifact()
+                    ? MappingArtifact.read(new ByteArrayInputStream(content), source.name)
+                    : ExcelMappingReader.readMappings(new ByteArrayInputStream(content), source.name));
+            MappingPlan plan = MappingPlan.compile(mappings);
+            logger.info("{} mappings '{}' ({} mappings, sha256 {}).", previous == null ? "Loaded" : "Reloaded",
+                    source.name, mappings.size(), hash.substring(0, 12));
+            return new Entry(source.name, mappings, plan, hash, lastModified, content.length);
+        }
+    }
+}
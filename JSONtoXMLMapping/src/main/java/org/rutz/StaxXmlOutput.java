@@ -0,0 +1,172 @@
+package org.rutz;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * XmlOutput that streams elements to an {@link OutputStream} through a StAX {@link XMLStreamWriter}.
+ * Nothing but the current element path is kept in memory, regardless of document size.
+ */
+public class StaxXmlOutput implements XmlOutput {
+
+    // XMLOutputFactory is thread-safe once configured; creating one per document costs a service lookup
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final OutputStream out;
+    private final XMLStreamWriter writer;
+    private final XmlWriteOptions options;
+    private final boolean prettyPrint;
+    private final int indent;
+    private final boolean fragment;
+    private String[] indents = new String[0];
+    // hasChildElements[d] is true once the open element at depth d received a child element
+    private boolean[] hasChildElements = new boolean[16];
+    private int depth;
+    private final StringBuilder textBuffer = new StringBuilder(64);
+    private char[] textChars = new char[64];
+
+    /**
+     * @param out     The stream to write UTF-8 encoded XML to. It is flushed, but not closed, by {@link #endDocument()}.
+     * @param options Formatting options.
+     */
+    public StaxXmlOutput(OutputStream out, XmlWriteOptions options) throws XMLStreamException {
+        this(out, options, 0, false);
+    }
+
+    private StaxXmlOutput(OutputStream out, XmlWriteOptions options, int depth, boolean fragment) throws XMLStreamException {
+        // The StAX writer encodes byte by byte; buffer without locking so the target stream only sees block writes
+        this.out = new UnsyncBufferedOutputStream(out, 8192);
+        this.writer = OUTPUT_FACTORY.createXMLStreamWriter(this.out, "UTF-8");
+        this.options = options;
+        this.prettyPrint = options.isPrettyPrint();
+        this.indent = options.getIndent();
+        this.depth = depth;
+        this.fragment = fragment;
+        if (depth >= hasChildElements.length) {
+            hasChildElements = new boolean[depth * 2];
+        }
+    }
+
+    @Override
+    public void startDocument() throws XMLStreamException {
+        writer.writeStartDocument("UTF-8", "1.0");
+    }
+
+    @Override
+    public void startElement(String name) throws XMLStreamException {
+        if (prettyPrint) {
+            if (depth > 0) {
+                hasChildElements[depth - 1] = true;
+            }
+            writer.writeCharacters(indentation(depth));
+        }
+        writer.writeStartElement(name);
+        if (depth == hasChildElements.length) {
+            hasChildElements = Arrays.copyOf(hasChildElements, depth * 2);
+        }
+        hasChildElements[depth++] = false;
+    }
+
+    @Override
+    public void text(String value) throws XMLStreamException {
+        writer.writeCharacters(value);
+    }
+
+    @Override
+    public void textElement(String name, CharSequence value) throws XMLStreamException {
+        int length = value.length();
+        if (length > textChars.length) {
+            textChars = new char[Math.max(length, textChars.length * 2)];
+        }
+        if (value instanceof StringBuilder) {
+            ((StringBuilder) value).getChars(0, length, textChars, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                textChars[i] = value.charAt(i);
+            }
+        }
+        startElement(name);
+        writer.writeCharacters(textChars, 0, length);
+        endElement();
+    }
+
+    @Override
+    public StringBuilder textBuffer() {
+        textBuffer.setLength(0);
+        return textBuffer;
+    }
+
+    @Override
+    public void endElement() throws XMLStreamException {
+        depth--;
+        if (prettyPrint && hasChildElements[depth]) {
+            writer.writeCharacters(indentation(depth));
+        }
+        writer.writeEndElement();
+    }
+
+    @Override
+    public void endDocument() throws XMLStreamException {
+        if (!fragment) {
+            writer.writeEndDocument();
+            if (prettyPrint) {
+                writer.writeCharacters("\n");
+            }
+        }
+        writer.flush();
+    }
+
+    @Override
+    public boolean supportsFragments() {
+        return true;
+    }
+
+    @Override
+    public XmlOutput createFragment(OutputStream fragmentOut) throws XMLStreamException {
+        return new StaxXmlOutput(fragmentOut, options, depth, true);
+    }
+
+    @Override
+    public void writeFragment(byte[] bytes) throws Exception {
+        if (bytes.length == 0) {
+            return;
+        }
+        if (depth > 0) {
+            hasChildElements[depth - 1] = true;
+        }
+        // Writing (empty) characters completes a pending start tag before the raw bytes go to the stream
+        writer.writeCharacters("");
+        writer.flush();
+        out.write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to close the XML writer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a line break followed by the indentation for the given depth, cached per depth.
+     */
+    private String indentation(int level) {
+        if (level >= indents.length) {
+            String[] grown = Arrays.copyOf(indents, level + 8);
+            for (int i = indents.length; i < grown.length; i++) {
+                char[] chars = new char[1 + i * indent];
+                Arrays.fill(chars, ' ');
+                chars[0] = '\n';
+                grown[i] = new String(chars);
+            }
+            indents = grown;
+        }
+        return indents[level];
+    }
+}
@@ -0,0 +1,168 @@
+package org.rutz;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads mappings with POI's event API: the first sheet is parsed with SAX and each row becomes an
+ * {@link ExcelMappingReader.XmlMapping} as soon as it ends, so no cell objects or styles are kept in memory.
+ * <p>
+ * Formula cells yield the result Excel cached when the workbook was saved; nothing is evaluated.
+ * Cell values are formatted the same way as by the workbook reader.
+ */
+class StreamingExcelMappingReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingExcelMappingReader.class);
+
+    private static final int COLUMN_COUNT = 5;
+
+    /**
+     * Reads the workbook from a file. Only the parts that are parsed are read from disk, so memory stays bounded by
+     * the largest of them rather than the size of the workbook.
+     *
+     * @param file       The workbook file; it is opened read-only.
+     * @param sourceName Name of the source, used in log messages.
+     * @return The mappings of the first sheet, in row order.
+     */
+    static List<ExcelMappingReader.XmlMapping> readMappings(File file, String sourceName) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            return readMappings(pkg, sourceName);
+        } finally {
+            // close() would try to save a read-only package
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Reads the workbook from a stream, for sources that are not files. POI buffers the whole package in memory first,
+     * so prefer {@link #readMappings(File, String)} when there is a file.
+     *
+     * @param is         The workbook content; it is read fully but not closed.
+     * @param sourceName Name of the source, used in log messages.
+     * @return The mappings of the first sheet, in row order.
+     */
+    static List<ExcelMappingReader.XmlMapping> readMappings(InputStream is, String sourceName) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(is)) {
+            return readMappings(pkg, sourceName);
+        }
+    }
+
+    private static List<ExcelMappingReader.XmlMapping> readMappings(OPCPackage pkg, String sourceName) throws Exception {
+        XSSFReader reader = new XSSFReader(pkg);
+        ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+        StylesTable styles = reader.getStylesTable();
+
+        Iterator<InputStream> sheets = reader.getSheetsData();
+        if (!sheets.hasNext()) {
+            throw new IllegalArgumentException("Workbook '" + sourceName + "' has no sheets.");
+        }
+        MappingRowHandler rows = new MappingRowHandler();
+        try (InputStream sheet = sheets.next()) {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new MappingSheetHandler(styles, sharedStrings, rows));
+            parser.parse(new InputSource(sheet));
+        }
+        logger.info("Excel mappings streamed successfully from '{}'. Total mappings: {}", sourceName, rows.mappings.size());
+        return rows.mappings;
+    }
+
+    /**
+     * Tells the row handler whether the cell being parsed is a boolean, which the formatted value alone does not.
+     */
+    private static final class MappingSheetHandler extends XSSFSheetXMLHandler {
+        private final MappingRowHandler rows;
+
+        MappingSheetHandler(StylesTable styles, ReadOnlySharedStringsTable sharedStrings, MappingRowHandler rows) {
+            super(styles, null, sharedStrings, rows, new MappingCellFormatter(), false);
+            this.rows = rows;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if ("c".equals(localName)) {
+                rows.booleanCell = "b".equals(attributes.getValue("t"));
+            }
+            super.startElement(uri, localName, qName, attributes);
+        }
+    }
+
+    /**
+     * Collects the five mapping columns of each row and turns complete rows into mappings.
+     */
+    private static final class MappingRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final List<ExcelMappingReader.XmlMapping> mappings = new ArrayList<>();
+        private final String[] values = new String[COLUMN_COUNT];
+        private int previousRow = 0;
+        private boolean booleanCell;
+
+        @Override
+        public void startRow(int rowNum) {
+            for (int i = previousRow + 1; i < rowNum; i++) {
+                logger.warn("Row {} is empty. Skipping.", i + 1);
+            }
+            previousRow = rowNum;
+            Arrays.fill(values, "");
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            if (column < COLUMN_COUNT && formattedValue != null) {
+                // POI formats booleans as TRUE/FALSE; the workbook reader yields true/false
+                values[column] = booleanCell ? formattedValue.toLowerCase(Locale.ROOT) : formattedValue.trim();
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum == 0) {
+                return; // Header
+            }
+            if (values[1].isEmpty()) {
+                logger.warn("Row {} has an empty API Field Name. Skipping.", rowNum + 1);
+                return;
+            }
+            ExcelMappingReader.XmlMapping mapping = new ExcelMappingReader.XmlMapping(values[0], values[1], values[2], values[3], values[4]);
+            mappings.add(mapping);
+            logger.debug("Added mapping: {}", mapping);
+        }
+    }
+
+    /**
+     * Formats numeric cells like {@code ExcelMappingReader.getCellValueAsString}: whole numbers without a fraction,
+     * dates as {@link java.util.Date#toString()}, regardless of the cell's display format.
+     */
+    private static final class MappingCellFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getJavaDate(value, use1904Windowing).toString();
+            }
+            return value == (long) value ? String.valueOf((long) value) : String.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.rutz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A buffered output stream without the per-call locking of {@link java.io.BufferedOutputStream}.
+ * Serializers that write one byte at a time go through this so the target stream only sees block writes.
+ * Not thread-safe; each instance belongs to a single writer.
+ */
+final class UnsyncBufferedOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count;
+
+    UnsyncBufferedOutputStream(OutputStream out, int size) {
+        this.out = out;
+        this.buffer = new byte[size];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        if (len >= buffer.length) {
+            // Larger than the buffer: write through instead of copying
+            flushBuffer();
+            out.write(bytes, off, len);
+            return;
+        }
+        if (len > buffer.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(bytes, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flushes the buffer without closing the target stream.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
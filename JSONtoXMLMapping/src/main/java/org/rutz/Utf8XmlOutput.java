@@ -0,0 +1,297 @@
+package org.rutz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * XmlOutput that escapes and UTF-8 encodes text itself, straight into a pooled byte buffer, and writes tags from the
+ * bytes precomputed in {@link XmlName}s. The buffer goes to the sink, an {@link OutputStream} or a
+ * {@link WritableByteChannel} such as a {@link java.nio.channels.FileChannel}, only when it is full or the document
+ * ends, so there is no encoder, no per-element String and no further buffering in between.
+ * <p>
+ * Writes exactly the bytes {@link StaxXmlOutput} writes for the same calls, except for unpaired surrogates in text,
+ * which are written as '?' (the JDK StAX writer produces invalid UTF-8 for them).
+ * <p>
+ * Not thread-safe. The buffer returns to the pool on {@link #close()}, after which the output must not be used.
+ */
+public class Utf8XmlOutput implements XmlOutput {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    // Bounded so that a burst of parallel fragments does not keep its buffers alive forever
+    private static final BlockingQueue<byte[]> BUFFER_POOL =
+            new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    private static final byte[] DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AMP = "&amp;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LT = "&lt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GT = "&gt;".getBytes(StandardCharsets.US_ASCII);
+    // The most bytes one char can take: "&amp;"
+    private static final int MAX_BYTES_PER_CHAR = 5;
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final XmlWriteOptions options;
+    private final boolean prettyPrint;
+    private final int indent;
+    private final boolean fragment;
+    private byte[] buffer;
+    private final ByteBuffer channelBuffer;
+    private int count;
+    private byte[][] indents = new byte[0][];
+    private XmlName[] openElements;
+    // hasChildElements[d] is true once the open element at depth d received a child element
+    private boolean[] hasChildElements;
+    private int depth;
+    private final StringBuilder textBuffer = new StringBuilder(64);
+
+    /**
+     * @param out     The stream to write UTF-8 encoded XML to. It is flushed, but not closed, by {@link #endDocument()}.
+     * @param options Formatting options.
+     */
+    public Utf8XmlOutput(OutputStream out, XmlWriteOptions options) {
+        this(out, null, options, 0, false);
+    }
+
+    /**
+     * @param channel The channel to write UTF-8 encoded XML to, e.g. a FileChannel. It is not closed.
+     * @param options Formatting options.
+     */
+    public Utf8XmlOutput(WritableByteChannel channel, XmlWriteOptions options) {
+        this(null, channel, options, 0, false);
+    }
+
+    private Utf8XmlOutput(OutputStream out, WritableByteChannel channel, XmlWriteOptions options, int depth, boolean fragment) {
+        this.out = out;
+        this.channel = channel;
+        this.options = options;
+        this.prettyPrint = options.isPrettyPrint();
+        this.indent = options.getIndent();
+        this.depth = depth;
+        this.fragment = fragment;
+        this.openElements = new XmlName[Math.max(16, depth * 2)];
+        this.hasChildElements = new boolean[openElements.length];
+        byte[] pooled = BUFFER_POOL.poll();
+        this.buffer = pooled != null ? pooled : new byte[BUFFER_SIZE];
+        this.channelBuffer = channel != null ? ByteBuffer.wrap(buffer) : null;
+    }
+
+    @Override
+    public void startDocument() throws IOException {
+        writeBytes(DECLARATION);
+    }
+
+    @Override
+    public void startElement(String name) throws IOException {
+        startElement(XmlName.of(name));
+    }
+
+    @Override
+    public void startElement(XmlName name) throws IOException {
+        if (prettyPrint) {
+            if (depth > 0) {
+                hasChildElements[depth - 1] = true;
+            }
+            writeBytes(indentation(depth));
+        }
+        writeBytes(name.startTag());
+        if (depth == openElements.length) {
+            openElements = Arrays.copyOf(openElements, depth * 2);
+            hasChildElements = Arrays.copyOf(hasChildElements, depth * 2);
+        }
+        openElements[depth] = name;
+        hasChildElements[depth++] = false;
+    }
+
+    @Override
+    public void text(String value) throws IOException {
+        writeEscaped(value);
+    }
+
+    @Override
+    public void textElement(String name, String value) throws IOException {
+        textElement(XmlName.of(name), value);
+    }
+
+    @Override
+    public void textElement(String name, CharSequence value) throws IOException {
+        textElement(XmlName.of(name), value);
+    }
+
+    @Override
+    public void textElement(XmlName name, CharSequence value) throws IOException {
+        startElement(name);
+        writeEscaped(value);
+        endElement();
+    }
+
+    @Override
+    public StringBuilder textBuffer() {
+        textBuffer.setLength(0);
+        return textBuffer;
+    }
+
+    @Override
+    public void endElement() throws IOException {
+        depth--;
+        if (prettyPrint && hasChildElements[depth]) {
+            writeBytes(indentation(depth));
+        }
+        writeBytes(openElements[depth].endTag());
+        openElements[depth] = null;
+    }
+
+    @Override
+    public void endDocument() throws IOException {
+        if (!fragment && prettyPrint) {
+            writeBytes(indentation(0), 0, 1);
+        }
+        flushBuffer();
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public boolean supportsFragments() {
+        return true;
+    }
+
+    @Override
+    public XmlOutput createFragment(OutputStream fragmentOut) {
+        return new Utf8XmlOutput(fragmentOut, null, options, depth, true);
+    }
+
+    @Override
+    public void writeFragment(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            return;
+        }
+        if (depth > 0) {
+            hasChildElements[depth - 1] = true;
+        }
+        writeBytes(bytes);
+    }
+
+    /**
+     * Returns the buffer to the pool without flushing it.
+     */
+    @Override
+    public void close() {
+        if (buffer != null) {
+            BUFFER_POOL.offer(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Escapes '&amp;', '&lt;' and '&gt;' like StAX character data and encodes the text as UTF-8 into the buffer.
+     */
+    private void writeEscaped(CharSequence value) throws IOException {
+        byte[] buf = buffer;
+        int limit = buf.length - MAX_BYTES_PER_CHAR;
+        int pos = count;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (pos > limit) {
+                count = pos;
+                flushBuffer();
+                pos = 0;
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '&') {
+                    System.arraycopy(AMP, 0, buf, pos, AMP.length);
+                    pos += AMP.length;
+                } else if (c == '<') {
+                    System.arraycopy(LT, 0, buf, pos, LT.length);
+                    pos += LT.length;
+                } else if (c == '>') {
+                    System.arraycopy(GT, 0, buf, pos, GT.length);
+                    pos += GT.length;
+                } else {
+                    buf[pos++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                buf[pos++] = '?';
+            }
+        }
+        count = pos;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    private void writeBytes(byte[] bytes, int off, int len) throws IOException {
+        if (len > buffer.length - count) {
+            flushBuffer();
+            if (len > buffer.length) {
+                // Larger than the buffer (a big fragment): write through instead of copying
+                writeToSink(ByteBuffer.wrap(bytes, off, len));
+                return;
+            }
+        }
+        System.arraycopy(bytes, off, buffer, count, len);
+        count += len;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (out != null) {
+            out.write(buffer, 0, count);
+        } else {
+            channelBuffer.clear().limit(count);
+            writeToSink(channelBuffer);
+        }
+        count = 0;
+    }
+
+    private void writeToSink(ByteBuffer bytes) throws IOException {
+        if (out != null) {
+            out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            return;
+        }
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Returns a line break followed by the indentation for the given depth, cached per depth.
+     */
+    private byte[] indentation(int level) {
+        if (level >= indents.length) {
+            byte[][] grown = Arrays.copyOf(indents, level + 8);
+            for (int i = indents.length; i < grown.length; i++) {
+                byte[] bytes = new byte[1 + i * indent];
+                Arrays.fill(bytes, (byte) ' ');
+                bytes[0] = '\n';
+                grown[i] = bytes;
+            }
+            indents = grown;
+        }
+        return indents[level];
+    }
+}
@@ -0,0 +1,21 @@
+package org.rutz;
+
+/**
+ * Converts an API field value to the text of its XML element. Resolved once per mapping by
+ * {@link ValueConverters#forType(String)}, so converting a value involves no lookups.
+ * <p>
+ * Implementations must be thread-safe and should not throw for values they cannot convert; returning false is
+ * cheaper than building an exception for every bad value in a large response.
+ */
+@FunctionalInterface
+public interface ValueConverter {
+
+    /**
+     * Appends the XML text for {@code value} to {@code out}.
+     *
+     * @param value The non-null API value.
+     * @param out   The buffer to append to.
+     * @return false if the value cannot be converted. {@code out} may then hold partial text, which callers discard.
+     */
+    boolean convert(Object value, StringBuilder out);
+}
@@ -0,0 +1,516 @@
+package org.rutz;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.Format;
+import java.text.ParsePosition;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.OffsetDateTime;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registry of {@link ValueConverter}s by XML data type, as written in the mapping sheet's XML Type column.
+ * <p>
+ * A type is a name, optionally followed by a pattern in parentheses. Names are case-insensitive; patterns are not.
+ * <ul>
+ *     <li>{@code string}, {@code -} or empty: the value's text, unchanged.</li>
+ *     <li>{@code int}, {@code integer}, {@code long}: a whole number within the type's range.</li>
+ *     <li>{@code float}, {@code double}: a number in decimal or exponent notation, written as Java formats the
+ *     parsed float or double.</li>
+ *     <li>{@code decimal}, {@code decimal(2)}: a number written in plain notation, rounded half up to the given number
+ *     of fraction digits if one is given.</li>
+ *     <li>{@code boolean}: {@code true}, {@code false} (any case), {@code 1} or {@code 0}, written as true or false.</li>
+ *     <li>{@code date}, {@code date(dd/MM/yyyy)}: a date in ISO format or in the given {@link DateTimeFormatter}
+ *     pattern, written as yyyy-MM-dd.</li>
+ *     <li>{@code datetime}, {@code datetime(dd/MM/yyyy HH:mm)}: a date-time in ISO format, with or without offset, or in
+ *     the given pattern; written in ISO format, with the offset if the value has one. Instants and
+ *     {@link Date}s are written in UTC.</li>
+ *     <li>{@code enum(A|B|C)}: one of the listed values, case-sensitive.</li>
+ * </ul>
+ * Unknown types are written as text, with a warning when the mapping is compiled. Custom types can be added with
+ * {@link #register(String, Function)}.
+ * <p>
+ * Number, boolean, enum and ISO date values are validated by scanning, so invalid values are rejected without
+ * exceptions. Custom date patterns are parsed strictly: text that names an impossible date, such as 31/02/2021, is
+ * rejected rather than moved to the end of the month. java.time reports such dates by throwing internally. In a
+ * pattern, {@code yyyy} is read as {@code uuuu}, since a strict year-of-era would also need an era in the text.
+ */
+public final class ValueConverters {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValueConverters.class);
+
+    /**
+     * Writes the value's text unchanged.
+     */
+    public static final ValueConverter TEXT = (value, out) -> {
+        if (value instanceof CharSequence) {
+            out.append((CharSequence) value);
+        } else {
+            out.append(value);
+        }
+        return true;
+    };
+
+    private static final Map<String, Function<String, ValueConverter>> FACTORIES = new ConcurrentHashMap<>();
+
+    static {
+        register("string", pattern -> TEXT);
+        register("-", pattern -> TEXT);
+        register("", pattern -> TEXT);
+        register("int", pattern -> integerConverter(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        register("integer", pattern -> integerConverter(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        register("long", pattern -> integerConverter(Long.MIN_VALUE, Long.MAX_VALUE));
+        register("float", pattern -> ValueConverters::convertFloat);
+        register("double", pattern -> ValueConverters::convertDouble);
+        register("decimal", ValueConverters::decimalConverter);
+        register("boolean", pattern -> ValueConverters::convertBoolean);
+        register("date", ValueConverters::dateConverter);
+        register("datetime", ValueConverters::dateTimeConverter);
+        register("enum", ValueConverters::enumConverter);
+    }
+
+    private ValueConverters() {
+    }
+
+    /**
+     * Registers a converter for an XML data type, replacing any existing one. Register custom types before compiling
+     * the mappings that use them.
+     *
+     * @param typeName The type name; matched case-insensitively.
+     * @param factory  Creates the converter from the type's pattern, which is null if the type has none. It may throw
+     *                 IllegalArgumentException for an invalid pattern.
+     */
+    public static void register(String typeName, Function<String, ValueConverter> factory) {
+        FACTORIES.put(typeName.toLowerCase(Locale.ROOT), factory);
+    }
+
+    /**
+     * Resolves the converter for an XML data type.
+     *
+     * @param xmlDataType A type such as {@code float} or {@code date(dd/MM/yyyy)}; null is treated as text.
+     * @throws IllegalArgumentException if the type's pattern is invalid.
+     */
+    public static ValueConverter forType(String xmlDataType) {
+        String type = normalize(xmlDataType);
+        int open = type.indexOf('(');
+        String name = open < 0 ? type : type.substring(0, open);
+        String pattern = null;
+        if (open >= 0) {
+            if (!type.endsWith(")")) {
+                throw new IllegalArgumentException("Missing ')' in XML data type '" + xmlDataType + "'.");
+            }
+            pattern = type.substring(open + 1, type.length() - 1);
+        }
+        Function<String, ValueConverter> factory = FACTORIES.get(name);
+        if (factory == null) {
+            logger.warn("Unknown XML data type '{}'. Values will be written as text.", xmlDataType);
+            return TEXT;
+        }
+        try {
+            return factory.apply(pattern);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid XML data type '" + xmlDataType + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The type trimmed, with its name in lower case and its pattern unchanged.
+     */
+    static String normalize(String xmlDataType) {
+        if (xmlDataType == null) {
+            return "";
+        }
+        String type = xmlDataType.trim();
+        int open = type.indexOf('(');
+        String name = open < 0 ? type : type.substring(0, open).trim();
+        return open < 0 ? name.toLowerCase(Locale.ROOT) : name.toLowerCase(Locale.ROOT) + type.substring(open);
+    }
+
+    // Numbers
+
+    private static ValueConverter integerConverter(long min, long max) {
+        return (value, out) -> {
+            long result;
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                result = ((Number) value).longValue();
+            } else if (value instanceof BigInteger) {
+                BigInteger big = (BigInteger) value;
+                if (big.bitLength() > 63) {
+                    return false;
+                }
+                result = big.longValue();
+            } else {
+                CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+                int start = trimStart(text);
+                int end = trimEnd(text, start);
+                if (!isInteger(text, start, end)) {
+                    return false;
+                }
+                // Accumulate negatively so Long.MIN_VALUE fits
+                boolean negative = text.charAt(start) == '-';
+                int i = text.charAt(start) == '-' || text.charAt(start) == '+' ? start + 1 : start;
+                long accumulated = 0;
+                for (; i < end; i++) {
+                    int digit = text.charAt(i) - '0';
+                    if (accumulated < (Long.MIN_VALUE + digit) / 10) {
+                        return false;
+                    }
+                    accumulated = accumulated * 10 - digit;
+                }
+                if (!negative && accumulated == Long.MIN_VALUE) {
+                    return false;
+                }
+                result = negative ? accumulated : -accumulated;
+            }
+            if (result < min || result > max) {
+                return false;
+            }
+            out.append(result);
+            return true;
+        };
+    }
+
+    private static boolean convertFloat(Object value, StringBuilder out) {
+        if (value instanceof Number) {
+            out.append(((Number) value).floatValue());
+            return true;
+        }
+        String text = value.toString();
+        if (!isFloatingPoint(text)) {
+            return false;
+        }
+        out.append(Float.parseFloat(text));
+        return true;
+    }
+
+    private static boolean convertDouble(Object value, StringBuilder out) {
+        if (value instanceof Number) {
+            out.append(((Number) value).doubleValue());
+            return true;
+        }
+        String text = value.toString();
+        if (!isFloatingPoint(text)) {
+            return false;
+        }
+        out.append(Double.parseDouble(text));
+        return true;
+    }
+
+    private static ValueConverter decimalConverter(String pattern) {
+        Integer scale = null;
+        if (pattern != null && !pattern.isEmpty()) {
+            if (!isInteger(pattern, 0, pattern.length()) || pattern.length() > 3) {
+                throw new IllegalArgumentException("Expected a number of fraction digits but found '" + pattern + "'.");
+            }
+            scale = Integer.parseInt(pattern);
+        }
+        Integer fractionDigits = scale;
+        return (value, out) -> {
+            BigDecimal decimal;
+            if (value instanceof BigDecimal) {
+                decimal = (BigDecimal) value;
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                decimal = BigDecimal.valueOf(((Number) value).longValue());
+            } else if (value instanceof BigInteger) {
+                decimal = new BigDecimal((BigInteger) value);
+            } else if (value instanceof Double || value instanceof Float) {
+                double d = ((Number) value).doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    return false;
+                }
+                // Widened to double, 0.1f would become 0.10000000149011612
+                decimal = value instanceof Float ? new BigDecimal(Float.toString((Float) value)) : BigDecimal.valueOf(d);
+            } else {
+                String text = value.toString().trim();
+                if (!isDecimal(text, 0, text.length(), true)) {
+                    return false;
+                }
+                decimal = new BigDecimal(text);
+            }
+            if (fractionDigits != null) {
+                decimal = decimal.setScale(fractionDigits, RoundingMode.HALF_UP);
+            }
+            out.append(decimal.toPlainString());
+            return true;
+        };
+    }
+
+    // Booleans and enums
+
+    private static boolean convertBoolean(Object value, StringBuilder out) {
+        if (value instanceof Boolean) {
+            out.append(((Boolean) value).booleanValue());
+            return true;
+        }
+        CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+        int start = trimStart(text);
+        int end = trimEnd(text, start);
+        if (regionMatches(text, start, end, "true") || regionMatches(text, start, end, "1")) {
+            out.append("true");
+        } else if (regionMatches(text, start, end, "false") || regionMatches(text, start, end, "0")) {
+            out.append("false");
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static ValueConverter enumConverter(String pattern) {
+        if (pattern == null || pattern.trim().isEmpty()) {
+            throw new IllegalArgumentException("List the allowed values, e.g. enum(Open|Completed).");
+        }
+        Set<String> allowed = new HashSet<>();
+        for (String option : pattern.split("\\|")) {
+            allowed.add(option.trim());
+        }
+        Set<String> values = Collections.unmodifiableSet(allowed);
+        return (value, out) -> {
+            String text = value instanceof Enum<?> ? ((Enum<?>) value).name() : value.toString();
+            if (!values.contains(text)) {
+                return false;
+            }
+            out.append(text);
+            return true;
+        };
+    }
+
+    // Dates
+
+    private static ValueConverter dateConverter(String pattern) {
+        Format format = (pattern == null ? DateTimeFormatter.ISO_LOCAL_DATE : strictFormatter(pattern))
+                .toFormat(LocalDate::from);
+        return (value, out) -> {
+            LocalDate date;
+            if (value instanceof TemporalAccessor && ((TemporalAccessor) value).isSupported(ChronoField.EPOCH_DAY)) {
+                date = LocalDate.ofEpochDay(((TemporalAccessor) value).getLong(ChronoField.EPOCH_DAY));
+            } else if (value instanceof Date) {
+                date = ((Date) value).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            } else if (pattern == null && value instanceof CharSequence) {
+                // ISO input is already in the output format and only needs checking
+                CharSequence text = (CharSequence) value;
+                if (!isIsoDate(text)) {
+                    return false;
+                }
+                out.append(text);
+                return true;
+            } else {
+                date = (LocalDate) parse(format, value.toString());
+                if (date == null) {
+                    return false;
+                }
+            }
+            DateTimeFormatter.ISO_LOCAL_DATE.formatTo(date, out);
+            return true;
+        };
+    }
+
+    private static ValueConverter dateTimeConverter(String pattern) {
+        // Without a pattern, the offset is optional
+        Format format = (pattern == null ? DateTimeFormatter.ISO_DATE_TIME : strictFormatter(pattern)).toFormat();
+        return (value, out) -> {
+            TemporalAccessor dateTime;
+            if (value instanceof Instant) {
+                dateTime = ((Instant) value).atOffset(ZoneOffset.UTC);
+            } else if (value instanceof Date) {
+                dateTime = ((Date) value).toInstant().atOffset(ZoneOffset.UTC);
+            } else if (value instanceof TemporalAccessor) {
+                dateTime = (TemporalAccessor) value;
+            } else {
+                dateTime = (TemporalAccessor) parse(format, value.toString());
+                if (dateTime == null) {
+                    return false;
+                }
+            }
+            if (!dateTime.isSupported(ChronoField.EPOCH_DAY) || !dateTime.isSupported(ChronoField.NANO_OF_DAY)) {
+                return false;
+            }
+            if (dateTime.isSupported(ChronoField.OFFSET_SECONDS)) {
+                DateTimeFormatter.ISO_OFFSET_DATE_TIME.formatTo(OffsetDateTime.from(dateTime), out);
+            } else {
+                DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(LocalDateTime.from(dateTime), out);
+            }
+            return true;
+        };
+    }
+
+    /**
+     * @return A formatter for the pattern that rejects impossible dates. The ISO formatters are already strict. Outside
+     * quoted literals, {@code y} (year-of-era) is replaced by {@code u} (year), which resolves without an era.
+     * @throws IllegalArgumentException if the pattern is invalid.
+     */
+    static DateTimeFormatter strictFormatter(String pattern) {
+        StringBuilder translated = new StringBuilder(pattern.length());
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            translated.append(!quoted && c == 'y' ? 'u' : c);
+        }
+        return DateTimeFormatter.ofPattern(translated.toString()).withResolverStyle(ResolverStyle.STRICT);
+    }
+
+    /**
+     * @return The parsed value, or null if the whole text does not match. {@link Format#parseObject(String, ParsePosition)}
+     * reports errors through the position rather than by throwing.
+     */
+    private static Object parse(Format format, String text) {
+        ParsePosition position = new ParsePosition(0);
+        Object result = format.parseObject(text, position);
+        return position.getErrorIndex() < 0 && position.getIndex() == text.length() ? result : null;
+    }
+
+    // Scanning
+
+    /**
+     * @return true for a valid date in the form yyyy-MM-dd.
+     */
+    private static boolean isIsoDate(CharSequence text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return false;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        return day <= Month.of(month).length(Year.isLeap(year));
+    }
+
+    /**
+     * @return The value of the digits in the range, or -1 if it contains anything else.
+     */
+    private static int digits(CharSequence text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int trimStart(CharSequence text) {
+        int start = 0;
+        while (start < text.length() && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence text, int start) {
+        int end = text.length();
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true for an optional sign followed by one or more digits.
+     */
+    private static boolean isInteger(CharSequence text, int start, int end) {
+        int i = start;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true for an optional sign, digits with an optional fraction, and, if {@code exponent} is set, an optional
+     * exponent, as accepted by {@link BigDecimal#BigDecimal(String)}.
+     */
+    private static boolean isDecimal(CharSequence text, int start, int end, boolean exponent) {
+        int i = start;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+            digits++;
+        }
+        if (i < end && text.charAt(i) == '.') {
+            i++;
+            while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (exponent && i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            return isInteger(text, i + 1, end) && end - i < 11;
+        }
+        return i == end;
+    }
+
+    /**
+     * @return true for the text {@link Float#parseFloat} and {@link Double#parseDouble} accept in decimal notation:
+     * surrounding whitespace, an optional type suffix, and NaN or Infinity.
+     */
+    private static boolean isFloatingPoint(String text) {
+        int start = trimStart(text);
+        int end = trimEnd(text, start);
+        int unsigned = start < end && (text.charAt(start) == '-' || text.charAt(start) == '+') ? start + 1 : start;
+        if (regionMatches(text, unsigned, end, "nan") || regionMatches(text, unsigned, end, "infinity")) {
+            // Case-sensitive, as parsed by Java
+            return text.startsWith("NaN", unsigned) || text.startsWith("Infinity", unsigned);
+        }
+        if (end > start) {
+            char last = text.charAt(end - 1);
+            if (last == 'f' || last == 'F' || last == 'd' || last == 'D') {
+                end--;
+            }
+        }
+        return isDecimal(text, start, end, true);
+    }
+}
@@ -0,0 +1,116 @@
+package org.rutz;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The source values an item's XML is written from, in the order the writer reads them, with a hash over them. Two
+ * items of the same group with equal snapshots are written identically, which is what {@link FragmentCache} relies on.
+ * Hashing uses {@link Object#hashCode()}, which Strings cache, so snapshotting an unchanged graph costs little more than
+ * reading it.
+ * <p>
+ * A cache entry keeps the values, not the objects they were read from: strings, numbers, booleans, enums, classes and
+ * java.time values are immutable and kept as they are, Dates are copied, and snapshots holding anything else are not
+ * stored at all, since their values could reference, and keep alive, the caller's graph.
+ */
+final class ValueSnapshot {
+
+    // Precedes list sizes, so a list cannot be mistaken for a field that holds a number
+    private static final Object LIST = new Object();
+
+    // Final, immutable value types whose instances a cache entry may keep
+    private static final Set<Class<?>> IMMUTABLE_TYPES = Set.of(String.class, Boolean.class, Character.class,
+            Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, BigDecimal.class,
+            BigInteger.class, Instant.class, LocalDate.class, LocalDateTime.class, LocalTime.class, OffsetDateTime.class,
+            OffsetTime.class, ZonedDateTime.class, Duration.class, UUID.class);
+    // Approximate heap size of a boxed number or java.time value
+    private static final int VALUE_OBJECT_SIZE = 48;
+
+    private Object[] values = new Object[64];
+    private int size;
+    private long hash;
+
+    void add(Object value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+        hash = (hash ^ (value != null ? value.hashCode() : 0x5bd1e995)) * 0x9e3779b97f4a7c15L;
+        hash ^= hash >>> 32;
+    }
+
+    void addListSize(int size) {
+        add(LIST);
+        add(size);
+    }
+
+    long hash() {
+        return hash ^ size;
+    }
+
+    /**
+     * @return The values to store with a cache entry, see the class description, or null if they cannot be stored.
+     */
+    Object[] toStoredValues() {
+        Object[] stored = new Object[size];
+        for (int i = 0; i < size; i++) {
+            Object value = values[i];
+            if (value instanceof Date) {
+                // Also copies subclasses such as java.sql.Timestamp
+                value = ((Date) value).clone();
+            } else if (!(value == null || value == LIST || value instanceof Enum || value instanceof Class
+                    || IMMUTABLE_TYPES.contains(value.getClass()))) {
+                return null;
+            }
+            stored[i] = value;
+        }
+        return stored;
+    }
+
+    /**
+     * @return The approximate heap size of stored values, references included. A value shared by several entries, e.g.
+     * a Member's name in the entries of the Member, its Team and its Branch, is counted by each of them.
+     */
+    static long storedSize(Object[] stored) {
+        long size = 16 + 8L * stored.length;
+        for (Object value : stored) {
+            if (value instanceof String) {
+                size += 40 + 2L * ((String) value).length();
+            } else if (value instanceof BigInteger) {
+                size += VALUE_OBJECT_SIZE + ((BigInteger) value).bitLength() / 8;
+            } else if (value instanceof BigDecimal) {
+                size += 2 * VALUE_OBJECT_SIZE + ((BigDecimal) value).unscaledValue().bitLength() / 8;
+            } else if (value != null && value != LIST && !(value instanceof Enum) && !(value instanceof Class)
+                    && !(value instanceof Boolean)) {
+                // Shared constants cost nothing; everything else is a small object
+                size += VALUE_OBJECT_SIZE;
+            }
+        }
+        return size;
+    }
+
+    boolean matches(Object[] stored) {
+        if (stored.length != size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!Objects.equals(values[i], stored[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
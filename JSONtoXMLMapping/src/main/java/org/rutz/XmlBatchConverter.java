@@ -0,0 +1,274 @@
+package org.rutz;
+
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Converts batches of API responses to XML concurrently, sharing one compiled {@link MappingPlan}.
+ * <p>
+ * Conversions run on virtual threads when the JDK provides them (21+) and on a fixed pool of platform threads
+ * otherwise. At most {@code maxInFlight} responses are pulled from the source ahead of the writers, so a lazy
+ * source is never read faster than it can be converted. A response that fails to convert is reported and the
+ * batch carries on with the next one.
+ */
+public class XmlBatchConverter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(XmlBatchConverter.class);
+
+    private final MappingPlan plan;
+    private final XmlWriteOptions options;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+
+    /**
+     * Opens the stream a single response is written to. The converter closes the stream once the response is written.
+     */
+    @FunctionalInterface
+    public interface SinkFactory {
+        OutputStream open(long index, Object response) throws Exception;
+    }
+
+    /**
+     * @param plan        The compiled MappingPlan, shared by all conversions.
+     * @param options     Formatting options for every document.
+     * @param maxInFlight Maximum number of responses being converted at once.
+     */
+    public XmlBatchConverter(MappingPlan plan, XmlWriteOptions options, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, was " + maxInFlight);
+        }
+        this.plan = plan;
+        this.options = options;
+        this.maxInFlight = maxInFlight;
+        this.executor = createExecutor(maxInFlight);
+    }
+
+    /**
+     * Uses one in-flight conversion per available processor.
+     */
+    public XmlBatchConverter(MappingPlan plan, XmlWriteOptions options) {
+        this(plan, options, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Converts every response of the stream. See {@link #convert(Iterator, SinkFactory, Consumer)}.
+     */
+    public BatchResult convert(Stream<?> responses, SinkFactory sinks) throws InterruptedException {
+        return convert(responses.iterator(), sinks, null);
+    }
+
+    /**
+     * Converts every response of the iterator. See {@link #convert(Iterator, SinkFactory, Consumer)}.
+     */
+    public BatchResult convert(Iterator<?> responses, SinkFactory sinks) throws InterruptedException {
+        return convert(responses, sinks, null);
+    }
+
+    /**
+     * Converts every response the iterator yields and waits until all of them are written.
+     * <p>
+     * The iterator is only advanced on the calling thread, and blocks while {@code maxInFlight} conversions are
+     * running. Failures to open a sink or to convert a response are recorded in the result; an exception thrown by
+     * the iterator itself ends the batch after the conversions already started have finished. If the calling thread is
+     * interrupted during that wait, the exception is thrown at once, with the InterruptedException suppressed.
+     *
+     * @param responses The API responses to convert.
+     * @param sinks     Opens the output stream for each response.
+     * @param listener  Notified of every item's result, from the converting thread; may be null.
+     * @return Counts of converted and failed items, and the failures.
+     * @throws InterruptedException if the calling thread is interrupted while waiting. It returns without waiting for
+     *                              the conversions already started, which run to completion in the background, and
+     *                              leaves the thread's interrupt status set.
+     */
+    public BatchResult convert(Iterator<?> responses, SinkFactory sinks, Consumer<ItemResult> listener) throws InterruptedException {
+        long start = System.nanoTime();
+        Semaphore permits = new Semaphore(maxInFlight);
+        AtomicLong succeeded = new AtomicLong();
+        List<ItemResult> failures = Collections.synchronizedList(new ArrayList<>());
+        long index = 0;
+
+        try {
+            while (true) {
+                // The permit comes first, so no more than maxInFlight responses are held at once
+                permits.acquire();
+                boolean submitted = false;
+                try {
+                    if (!responses.hasNext()) {
+                        break;
+                    }
+                    Object response = responses.next();
+                    long itemIndex = index++;
+                    executor.execute(() -> {
+                        try {
+                            ItemResult result = convertItem(itemIndex, response, sinks);
+                            if (result.isSuccess()) {
+                                succeeded.incrementAndGet();
+                            } else {
+                                failures.add(result);
+                            }
+                            notifyListener(listener, result);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                    submitted = true;
+                } catch (RejectedExecutionException e) {
+                    throw new IllegalStateException("XmlBatchConverter has been closed.", e);
+                } finally {
+                    if (!submitted) {
+                        permits.release();
+                    }
+                }
+            }
+            awaitConversions(permits);
+        } catch (InterruptedException e) {
+            // Conversions already started run on in the background
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (RuntimeException | Error e) {
+            // Wait for the conversions already started before reporting the source's failure
+            try {
+                awaitConversions(permits);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                e.addSuppressed(interrupted);
+            }
+            throw e;
+        }
+
+        BatchResult result;
+        synchronized (failures) {
+            result = new BatchResult(succeeded.get(), failures.size(), new ArrayList<>(failures),
+                    Duration.ofNanos(System.nanoTime() - start));
+        }
+        logger.info("Converted batch of {} responses in {} ms: {} succeeded, {} failed.",
+                index, result.getElapsed().toMillis(), result.getSucceeded(), result.getFailed());
+        return result;
+    }
+
+    /**
+     * Waits until every permit is free, i.e. all submitted conversions have finished.
+     */
+    private void awaitConversions(Semaphore permits) throws InterruptedException {
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+    }
+
+    /**
+     * Stops accepting batches and waits for running conversions to finish. If the calling thread is interrupted while
+     * waiting, running conversions are interrupted and the thread's interrupt status is restored.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Conversions still running one minute after close; interrupting them.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ItemResult convertItem(long index, Object response, SinkFactory sinks) {
+        long start = System.nanoTime();
+        try (OutputStream out = sinks.open(index, response)) {
+            XmlBuilder.streamXml(plan, response, out, options);
+            return new ItemResult(index, null, System.nanoTime() - start);
+        } catch (Exception | Error e) {
+            // An Error (e.g. StackOverflowError on a cyclic graph) fails this item; the batch carries on
+            logger.warn("Failed to convert response {}: {}", index, e.getMessage());
+            logger.debug("Conversion failure of response {}", index, e);
+            return new ItemResult(index, e, System.nanoTime() - start);
+        }
+    }
+
+    private static void notifyListener(Consumer<ItemResult> listener, ItemResult result) {
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.accept(result);
+        } catch (RuntimeException e) {
+            logger.warn("Batch listener failed for response {}: {}", result.getIndex(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a virtual-thread-per-task executor when running on JDK 21+, otherwise a fixed pool of daemon threads.
+     * The semaphore in {@link #convert(Iterator, SinkFactory, Consumer)} bounds concurrency either way.
+     */
+    private static ExecutorService createExecutor(int threads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.debug("Using virtual threads for batch conversion.");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            logger.debug("Virtual threads not available; using {} platform threads for batch conversion.", threads);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Could not create virtual thread executor, falling back to platform threads: {}", e.getMessage());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "xml-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    /**
+     * Outcome of converting a single response.
+     */
+    @Value
+    public static class ItemResult {
+        /**
+         * Position of the response in the batch, starting at 0.
+         */
+        long index;
+        /**
+         * Why the conversion failed; null on success.
+         */
+        Throwable error;
+        long elapsedNanos;
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Outcome of a whole batch.
+     */
+    @Value
+    public static class BatchResult {
+        long succeeded;
+        long failed;
+        /**
+         * The failed items, in completion order.
+         */
+        List<ItemResult> failures;
+        Duration elapsed;
+    }
+}
@@ -1,552 +1,919 @@
-package org.rutz;
-
-import org.w3c.dom.*;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.File;
-import java.io.StringWriter;
-import java.lang.reflect.Field;
-import java.util.*;
-
-/**
- * XmlBuilder is responsible for converting API response objects into XML format
- * based on field mappings defined in an Excel file.
- */
-public class XmlBuilder {
-
-    private static final Logger logger = LoggerFactory.getLogger(XmlBuilder.class);
-
-    /**
-     * Converts the API response object to XML based on the provided mappings and writes it to a file.
-     *
-     * @param mappings       List of XmlMapping defining the field mappings.
-     * @param apiResponse    The API response object.
-     * @param outputFilePath The file path where the XML will be written.
-     * @throws Exception if an error occurs during conversion or file writing.
-     */
-    public static void buildXml(List<ExcelMappingReader.XmlMapping> mappings, Object apiResponse, String outputFilePath) throws Exception {
-        logger.info("Starting XML build process.");
-        Document document;
-        try {
-            // Initialize XML Document
-            document = createNewDocument();
-
-            // Determine root element from the first mapping
-            String rootPath = getRootPath(mappings);
-            String rootElementName = getLastPathSegment(rootPath);
-            Element rootElement = document.createElement(rootElementName);
-            document.appendChild(rootElement);
-            logger.debug("Created root element: <{}>", rootElementName);
-
-            // Group mappings by their "Group" column
-            Map<String, List<ExcelMappingReader.XmlMapping>> groupMap = groupMappingsByGroup(mappings);
-            logger.debug("Grouped mappings by group. Total groups: {}", groupMap.size());
-
-            // Process each group
-            for (Map.Entry<String, List<ExcelMappingReader.XmlMapping>> entry : groupMap.entrySet()) {
-                String group = entry.getKey();
-                List<ExcelMappingReader.XmlMapping> groupMappings = entry.getValue();
-                logger.info("Processing group: {}", group);
-
-                try {
-                    if (group.equalsIgnoreCase("Company")) {
-                        // Handle 'Company' as a single object
-                        handleSingleObjectGroup(document, rootElement, groupMappings, apiResponse);
-                    } else {
-                        // Handle other groups as collections
-                        handleCollectionGroup(document, rootElement, groupMappings, apiResponse, rootPath);
-                    }
-                } catch (Exception e) {
-                    logger.error("Error processing group '{}': {}", group, e.getMessage(), e);
-                }
-            }
-
-            logger.info("XML build process completed successfully.");
-        } catch (Exception e) {
-            logger.error("Error during XML build: {}", e.getMessage(), e);
-            throw e;
-        }
-
-        // Convert Document to String and write to file
-        try {
-            String xmlString = transformDocumentToString(document);
-            logger.debug("Generated XML:\n{}", xmlString);
-            writeXmlToFile(xmlString, outputFilePath);
-            logger.info("XML successfully written to file: {}", outputFilePath);
-        } catch (Exception e) {
-            logger.error("Failed to write XML to file '{}': {}", outputFilePath, e.getMessage(), e);
-            throw e;
-        }
-    }
-
-    /**
-     * Creates a new XML Document.
-     */
-    private static Document createNewDocument() throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        // Optional: factory.setNamespaceAware(true);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.newDocument();
-    }
-
-    /**
-     * Determines the root path from the first mapping.
-     */
-    private static String getRootPath(List<ExcelMappingReader.XmlMapping> mappings) {
-        if (mappings.isEmpty()) {
-            throw new IllegalArgumentException("No mappings provided.");
-        }
-        String rootPath = mappings.get(0).getXmlPath().split("/")[0];
-        logger.debug("Determined root path: {}", rootPath);
-        return rootPath;
-    }
-
-    /**
-     * Gets the last segment of an XML path.
-     */
-    private static String getLastPathSegment(String path) {
-        String[] parts = path.split("/");
-        return parts[parts.length - 1];
-    }
-
-    /**
-     * Groups mappings by their "Group" column.
-     */
-    private static Map<String, List<ExcelMappingReader.XmlMapping>> groupMappingsByGroup(List<ExcelMappingReader.XmlMapping> mappings) {
-        Map<String, List<ExcelMappingReader.XmlMapping>> grouped = new HashMap<>();
-        for (ExcelMappingReader.XmlMapping mapping : mappings) {
-            grouped.computeIfAbsent(mapping.getGroup(), k -> new ArrayList<>()).add(mapping);
-        }
-        return grouped;
-    }
-
-    /**
-     * Handles groups that are single objects (e.g., Company).
-     */
-    private static void handleSingleObjectGroup(Document document, Element rootElement, List<ExcelMappingReader.XmlMapping> groupMappings, Object apiResponse) throws Exception {
-        logger.info("Handling single object group: Company");
-
-        for (ExcelMappingReader.XmlMapping mapping : groupMappings) {
-            logger.debug("Processing Mapping - Group: {}, API Field: {}, XML Path: {}",
-                    mapping.getGroup(), mapping.getApiFieldName(), mapping.getXmlPath());
-            String xmlElementName = getLastPathSegment(mapping.getXmlPath());
-            String apiFieldName = mapping.getApiFieldName();
-            String xmlDataType = mapping.getXmlDataType();
-            Object fieldValue = getFieldValue(apiResponse, apiFieldName);
-
-            if (fieldValue == null) {
-                logger.warn("Field '{}' in Company is null. Skipping XML element '{}'.", apiFieldName, xmlElementName);
-                continue;
-            }
-
-            String convertedValue;
-            try {
-                convertedValue = convertToXmlDataType(fieldValue, xmlDataType);
-            } catch (Exception e) {
-                logger.error("Error converting field '{}' to XML Data Type '{}': {}", apiFieldName, xmlDataType, e.getMessage());
-                continue; // Skip this field if conversion fails
-            }
-
-            // Create and append the XML element with the converted value
-            Element element = document.createElement(xmlElementName);
-            element.appendChild(document.createTextNode(convertedValue));
-            rootElement.appendChild(element);
-            logger.debug("Added XML element <{}> with value '{}'.", xmlElementName, convertedValue);
-        }
-    }
-
-    /**
- * Handles groups that are collections (e.g., Branch, Team, Member).
- */
-private static void handleCollectionGroup(Document document, Element rootElement,
-                                          List<ExcelMappingReader.XmlMapping> groupMappings,
-                                          Object apiResponse, String rootPath) throws Exception {
-    String groupName = groupMappings.get(0).getGroup();
-    logger.info("Handling collection group: {}", groupName);
-
-    Optional<ExcelMappingReader.XmlMapping> collectionMappingOpt = groupMappings.stream()
-            .filter(m -> m.getApiDataType().startsWith("List<"))
-            .findFirst();
-
-    if (!collectionMappingOpt.isPresent()) {
-        logger.warn("No collection mapping found in group '{}'. Skipping group.", groupName);
-        return;
-    }
-
-    String basePath = collectionMappingOpt.get().getXmlPath();
-    if (!basePath.startsWith(rootPath + "/")) {
-        logger.warn("Group base path '{}' does not start with root path '{}'. Skipping group '{}'.", basePath, rootPath, groupName);
-        return;
-    }
-
-    String groupRelativePath = basePath.substring(rootPath.length() + 1);
-    List<Object> collectionObjects;
-    try {
-        collectionObjects = extractObjects(apiResponse, groupRelativePath);
-        if (collectionObjects == null || collectionObjects.isEmpty()) {
-            logger.warn("No objects found at path '{}'. Skipping group '{}'.", groupRelativePath, groupName);
-            return;
-        }
-    } catch (NoSuchFieldException nsfe) {
-        logger.error("Failed to extract collection object: {}", nsfe.getMessage());
-        return;
-    }
-
-    Element parentContainer = getOrCreateElement(document, rootElement, getParentPath(groupRelativePath));
-    for (Object item : collectionObjects) {
-        if (item == null) {
-            logger.warn("Encountered a null object in collection '{}'. Skipping.", groupRelativePath);
-            continue;
-        }
-
-        String collectionElementName = getLastPathSegment(groupRelativePath);
-        Element itemElement = document.createElement(collectionElementName);
-        parentContainer.appendChild(itemElement);
-
-        for (ExcelMappingReader.XmlMapping subMapping : groupMappings) {
-            String subXmlPath = subMapping.getXmlPath();
-            if (!subXmlPath.startsWith(basePath + "/")) {
-                continue;
-            }
-
-            String subRelativePath = subXmlPath.substring((basePath + "/").length());
-            if (subRelativePath.contains("/")) {
-                continue;
-            }
-
-            String xmlElementName = getLastPathSegment(subRelativePath);
-            String subApiFieldName = subMapping.getApiFieldName();
-            String subXmlDataType = subMapping.getXmlDataType();
-
-            Object fieldValue;
-            try {
-                fieldValue = getFieldValue(item, subApiFieldName);
-                if (fieldValue == null) {
-                    continue;
-                }
-            } catch (NoSuchFieldException nsfe) {
-                continue;
-            }
-
-            if (subMapping.getApiDataType().startsWith("List<")) {
-                if (!(fieldValue instanceof List<?>)) {
-                    continue;
-                }
-
-                List<?> list = (List<?>) fieldValue;
-                for (Object listItem : list) {
-                    if (listItem == null) {
-                        continue;
-                    }
-
-                    String convertedValue;
-                    try {
-                        convertedValue = convertToXmlDataType(listItem, subXmlDataType);
-                    } catch (Exception e) {
-                        continue;
-                    }
-
-                    Element element = document.createElement(xmlElementName);
-                    element.appendChild(document.createTextNode(convertedValue));
-                    itemElement.appendChild(element);
-                }
-            } else {
-                String convertedValue;
-                try {
-                    convertedValue = convertToXmlDataType(fieldValue, subXmlDataType);
-                } catch (Exception e) {
-                    continue;
-                }
-
-                Element element = document.createElement(xmlElementName);
-                element.appendChild(document.createTextNode(convertedValue));
-                itemElement.appendChild(element);
-            }
-        }
-    }
-}
-    /**
-     * Extracts objects from the API response based on the XML Path.
-     *
-     * @param apiResponse The API response object.
-     * @param xmlPath     The XML path to extract objects from.
-     * @return A list of extracted objects.
-     * @throws Exception if an error occurs during extraction.
-     */
-    private static List<Object> extractObjects(Object apiResponse, String xmlPath) throws Exception {
-        logger.info("Starting extraction of objects with XML Path: '{}'", xmlPath);
-
-        String[] pathSegments = xmlPath.split("/");
-        logger.debug("XML Path split into segments: {}", Arrays.toString(pathSegments));
-
-        List<Object> currentObjects = new ArrayList<>();
-        currentObjects.add(apiResponse);
-        logger.debug("Initial object list contains: {}", apiResponse != null ? apiResponse.getClass().getName() : "null");
-
-        for (String segment : pathSegments) {
-            logger.info("Attempting to access field '{}' on {} objects.", segment, currentObjects.size());
-
-            List<Object> nextObjects = new ArrayList<>();
-
-            for (Object obj : currentObjects) {
-                if (obj == null) {
-                    logger.warn("Current object is null. Cannot access field '{}'. Skipping.", segment);
-                    continue;
-                }
-
-                logger.info("Retrieving value for field '{}' from object of type '{}'", segment, obj.getClass().getName());
-
-                try {
-                    Object fieldValue = getFieldValue(obj, segment);
-                    if (fieldValue == null) {
-                        logger.warn("Field '{}' in object of type '{}' is null. Skipping.", segment, obj.getClass().getName());
-                        continue;
-                    }
-
-                    if (fieldValue instanceof List<?>) {
-                        List<?> list = (List<?>) fieldValue;
-                        logger.debug("Field '{}' is a List with {} items.", segment, list.size());
-                        nextObjects.addAll(list);
-                    } else {
-                        logger.debug("Field '{}' is a single object of type '{}'.", segment, fieldValue.getClass().getName());
-                        nextObjects.add(fieldValue);
-                    }
-                } catch (NoSuchFieldException nsfe) {
-                    logger.error("Field '{}' not found in class '{}'. Exception: {}", segment, obj.getClass().getName(), nsfe.getMessage());
-                    throw nsfe;
-                } catch (Exception e) {
-                    logger.error("Error accessing field '{}' in class '{}'. Exception: {}", segment, obj.getClass().getName(), e.getMessage());
-                    throw e;
-                }
-            }
-
-            currentObjects = nextObjects;
-            logger.debug("After accessing field '{}', number of current objects: {}", segment, currentObjects.size());
-
-            if (currentObjects.isEmpty()) {
-                logger.warn("No objects found after accessing field '{}'. Terminating extraction.", segment);
-                break;
-            }
-        }
-
-        logger.info("Completed extraction. Total objects extracted: {}", currentObjects.size());
-        return currentObjects;
-    }
-
-    /**
-     * Retrieves the value of a field from an object using reflection.
-     */
-    private static Object getFieldValue(Object obj, String fieldName) throws Exception {
-        logger.info("Retrieving value for field '{}' from object of type '{}'", fieldName,
-                obj != null ? obj.getClass().getName() : "null");
-
-        if (obj == null) {
-            logger.warn("Provided object is null. Cannot retrieve field '{}'.", fieldName);
-            return null;
-        }
-
-        Field field = getField(obj.getClass(), fieldName);
-
-        if (field == null) {
-            logger.error("Field '{}' not found in class '{}'.", fieldName, obj.getClass().getName());
-            throw new NoSuchFieldException("Field '" + fieldName + "' not found in " + obj.getClass().getName());
-        }
-
-        field.setAccessible(true);
-        Object value;
-        try {
-            value = field.get(obj);
-            logger.debug("Value of field '{}' retrieved successfully: {}", fieldName, value);
-        } catch (IllegalAccessException iae) {
-            logger.error("Illegal access when retrieving field '{}': {}", fieldName, iae.getMessage());
-            throw iae;
-        }
-
-        return value;
-    }
-
-    /**
-     * Recursively searches for a field in a class and its superclasses.
-     */
-    private static Field getField(Class<?> clazz, String fieldName) {
-        if (clazz == null) {
-            logger.warn("Reached top of class hierarchy. Field '{}' not found.", fieldName);
-            return null;
-        }
-
-        logger.debug("Searching for field '{}' in class '{}'", fieldName, clazz.getName());
-
-        try {
-            Field field = clazz.getDeclaredField(fieldName);
-            logger.debug("Field '{}' found in class '{}'", fieldName, clazz.getName());
-            return field;
-        } catch (NoSuchFieldException e) {
-            logger.debug("Field '{}' not found in class '{}'. Checking superclass.", fieldName, clazz.getName());
-            return getField(clazz.getSuperclass(), fieldName);
-        }
-    }
-
-    /**
-     * Retrieves all fields from a class and its superclasses.
-     */
-    private static List<Field> getAllFields(Class<?> type) {
-        List<Field> fields = new ArrayList<>();
-        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
-            fields.addAll(Arrays.asList(c.getDeclaredFields()));
-        }
-        return fields;
-    }
-
-    /**
-     * Checks if a class is a primitive type or its wrapper.
-     */
-    private static boolean isPrimitiveOrWrapper(Class<?> type) {
-        return type.isPrimitive() ||
-                type == Boolean.class ||
-                type == Byte.class ||
-                type == Character.class ||
-                type == Short.class ||
-                type == Integer.class ||
-                type == Long.class ||
-                type == Float.class ||
-                type == Double.class ||
-                type == Void.class;
-    }
-
-    /**
-     * Gets the parent path of a given XML path.
-     * E.g., for 'branches/teams/members/tasks', returns 'branches/teams/members'
-     */
-    private static String getParentPath(String xmlPath) {
-        int lastSlash = xmlPath.lastIndexOf('/');
-        if (lastSlash == -1) return xmlPath;
-        return xmlPath.substring(0, lastSlash);
-    }
-
-    /**
-     * Creates or retrieves an element based on the XML path.
-     */
-    private static Element getOrCreateElement(Document document, Element rootElement, String xmlPath) throws Exception {
-        String[] pathSegments = xmlPath.split("/");
-        Element current = rootElement;
-        for (String segment : pathSegments) {
-            NodeList nodeList = current.getElementsByTagName(segment);
-            if (nodeList.getLength() == 0) {
-                Element newElement = document.createElement(segment);
-                current.appendChild(newElement);
-                current = newElement;
-                logger.debug("Created element <{}>", segment);
-            } else {
-                current = (Element) nodeList.item(0);
-                logger.debug("Reusing existing element <{}>", segment);
-            }
-        }
-        return current;
-    }
-
-    /**
-     * Converts an object value to the appropriate XML data type.
-     *
-     * @param value       The value to convert.
-     * @param xmlDataType The target XML data type.
-     * @return The converted value as a string.
-     * @throws Exception if conversion fails.
-     */
-    private static String convertToXmlDataType(Object value, String xmlDataType) throws Exception {
-        if (value == null) {
-            return null;
-        }
-
-        switch (xmlDataType.toLowerCase()) {
-            case "float":
-                try {
-                    float floatValue = Float.parseFloat(value.toString());
-                    return String.valueOf(floatValue);
-                } catch (NumberFormatException e) {
-                    throw new Exception("Cannot convert value '" + value + "' to float.");
-                }
-                // Add more cases here for other XML Data Types as needed
-            default:
-                return value.toString();
-        }
-    }
-
-    /**
-     * Transforms an XML Document to a formatted String.
-     */
-    private static String transformDocumentToString(Document document) throws TransformerException {
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer transformer = tf.newTransformer();
-
-        // Pretty print the XML
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-
-        // Set XML declaration
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-
-        StringWriter writer = new StringWriter();
-        transformer.transform(new DOMSource(document), new StreamResult(writer));
-
-        return writer.getBuffer().toString();
-    }
-
-    /**
-     * Writes the XML string to a file.
-     *
-     * @param xmlContent     The XML content as a string.
-     * @param outputFilePath The file path where the XML will be written.
-     * @throws Exception if an error occurs during file writing.
-     */
-    private static void writeXmlToFile(String xmlContent, String outputFilePath) throws Exception {
-    logger.info("Writing XML content to file: {}", outputFilePath);
-    File file = new File(outputFilePath);
-
-    // Ensure parent directories exist
-    File parent = file.getParentFile();
-    if (parent != null && !parent.exists()) {
-        boolean dirsCreated = parent.mkdirs();
-        if (dirsCreated) {
-            logger.debug("Created parent directories for file '{}'", outputFilePath);
-        } else {
-            logger.warn("Failed to create parent directories for file '{}'", outputFilePath);
-        }
-    }
-
-    // Create a transformer to write the Document to the file
-    TransformerFactory tf = TransformerFactory.newInstance();
-    Transformer transformer = tf.newTransformer();
-
-    // Do not pretty print the XML
-    transformer.setOutputProperty(OutputKeys.INDENT, "no");
-
-    // Set XML declaration
-    transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-    transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-
-    Source source = new DOMSource(parseXmlFromString(xmlContent));
-    Result result = new StreamResult(file);
-    transformer.transform(source, result);
-}
-
-    /**
-     * Parses XML content from a string into a Document object.
-     *
-     * @param xmlContent The XML content as a string.
-     * @return The parsed Document object.
-     * @throws Exception if an error occurs during parsing.
-     */
-    private static Document parseXmlFromString(String xmlContent) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.parse(new org.xml.sax.InputSource(new java.io.StringReader(xmlContent)));
-    }
-}
+package org.rutz;
+
+import org.w3c.dom.*;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.*;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * XmlBuilder is responsible for converting API response objects into XML format
+ * based on field mappings defined in an Excel file.
+ */
+public class XmlBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(XmlBuilder.class);
+
+    private static volatile ConversionMetrics metrics = ConversionMetrics.NOOP;
+
+    // The factories are found through a service lookup, so DOM mode looks them up once. Builders and transformers
+    // are not thread-safe; each thread keeps one of each, configured when it is created.
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+    private static final Properties DOM_OUTPUT_PROPERTIES = domOutputProperties();
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(XmlBuilder::newDocumentBuilder);
+    private static final ThreadLocal<Transformer> DOM_TRANSFORMER = ThreadLocal.withInitial(XmlBuilder::newDomTransformer);
+
+    /**
+     * Installs the metrics that all subsequent conversions, mapping loads and plan compilations report to.
+     *
+     * @param conversionMetrics The metrics, e.g. an {@link InMemoryConversionMetrics}; null restores
+     *                          {@link ConversionMetrics#NOOP}.
+     */
+    public static void setMetrics(ConversionMetrics conversionMetrics) {
+        metrics = conversionMetrics != null ? conversionMetrics : ConversionMetrics.NOOP;
+    }
+
+    /**
+     * @return The installed metrics; {@link ConversionMetrics#NOOP} unless set.
+     */
+    public static ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Converts the API response object to XML based on the provided mappings and writes it to a file.
+     * The mappings are compiled into a {@link MappingPlan} on every call; callers converting many
+     * responses with the same mappings should compile the plan once and use
+     * {@link #buildXml(MappingPlan, Object, String)} instead.
+     *
+     * @param mappings       List of XmlMapping defining the field mappings.
+     * @param apiResponse    The API response object.
+     * @param outputFilePath The file path where the XML will be written.
+     * @throws Exception if an error occurs during conversion or file writing.
+     */
+    public static void buildXml(List<ExcelMappingReader.XmlMapping> mappings, Object apiResponse, String outputFilePath) throws Exception {
+        MappingPlan plan;
+        try {
+            plan = MappingPlan.compile(mappings);
+        } catch (Exception e) {
+            logger.error("Error during XML build: {}", e.getMessage(), e);
+            throw e;
+        }
+        buildXml(plan, apiResponse, outputFilePath);
+    }
+
+    /**
+     * Converts the API response object to XML by executing a precompiled mapping plan and writes it to a file.
+     *
+     * @param plan           The compiled MappingPlan; may be shared between threads.
+     * @param apiResponse    The API response object.
+     * @param outputFilePath The file path where the XML will be written.
+     * @throws Exception if an error occurs during conversion or file writing.
+     */
+    public static void buildXml(MappingPlan plan, Object apiResponse, String outputFilePath) throws Exception {
+        logger.debug("Starting XML build process.");
+        Document document;
+        try {
+            // Initialize XML Document and build it in a single depth-first walk of the API response
+            document = createNewDocument();
+            writeDocument(plan, apiResponse, new DomXmlOutput(document), XmlWriteOptions.defaults());
+
+            logger.debug("XML build process completed successfully.");
+        } catch (Exception e) {
+            logger.error("Error during XML build: {}", e.getMessage(), e);
+            throw e;
+        }
+
+        // Write the Document to file; the String form is only built when it is going to be logged
+        try {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Generated XML:\n{}", transformDocumentToString(document));
+            }
+            writeXmlToFile(document, outputFilePath);
+            logger.debug("XML successfully written to file: {}", outputFilePath);
+        } catch (Exception e) {
+            logger.error("Failed to write XML to file '{}': {}", outputFilePath, e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Streams the API response as XML to a file. See {@link #streamXml(MappingPlan, Object, OutputStream, XmlWriteOptions)}.
+     * The file is written through a fixed-size buffer, so documents of any size can be written; see
+     * {@link XmlWriteOptions#isAtomicFileWrite()} and {@link XmlWriteOptions#isFsync()} for when it becomes visible.
+     *
+     * @param plan           The compiled MappingPlan; may be shared between threads.
+     * @param apiResponse    The API response object.
+     * @param outputFilePath The file path where the XML will be written.
+     * @param options        Formatting options.
+     * @throws Exception if an error occurs during conversion or file writing.
+     */
+    public static void streamXml(MappingPlan plan, Object apiResponse, String outputFilePath, XmlWriteOptions options) throws Exception {
+        logger.debug("Streaming XML to file: {}", outputFilePath);
+        File file = new File(outputFilePath);
+        ensureParentDirectories(file);
+        try (FileSink sink = FileSink.open(file, options)) {
+            try (XmlOutput output = createOutput(sink, options)) {
+                writeDocument(plan, apiResponse, output, options);
+            }
+            sink.commit();
+        } catch (Exception e) {
+            logger.error("Failed to stream XML to file '{}': {}", outputFilePath, e.getMessage(), e);
+            throw e;
+        }
+        logger.debug("XML successfully written to file: {}", outputFilePath);
+    }
+
+    /**
+     * Streams the API response as XML to an output stream.
+     * <p>
+     * Unlike {@link #buildXml(MappingPlan, Object, String)} no DOM or intermediate String is built; every element is
+     * written as soon as the walk reaches it, so memory use does not grow with the size of the document.
+     *
+     * @param plan        The compiled MappingPlan; may be shared between threads.
+     * @param apiResponse The API response object.
+     * @param out         The stream to write UTF-8 encoded XML to, compressed if the options say so; it is flushed but
+     *                    not closed.
+     * @param options     Formatting options.
+     * @throws Exception if an error occurs during conversion or writing.
+     */
+    public static void streamXml(MappingPlan plan, Object apiResponse, OutputStream out, XmlWriteOptions options) throws Exception {
+        OutputStream target = CompressingOutputStream.wrap(out, options);
+        try {
+            try (XmlOutput output = createOutput(target, options)) {
+                writeDocument(plan, apiResponse, output, options);
+            }
+            CompressingOutputStream.finish(target);
+        } finally {
+            CompressingOutputStream.abort(target);
+        }
+    }
+
+    /**
+     * Creates the streaming output selected by {@link XmlWriteOptions#getBackend()}.
+     */
+    static XmlOutput createOutput(OutputStream out, XmlWriteOptions options) throws Exception {
+        return options.getBackend() == XmlWriteOptions.Backend.STAX
+                ? new StaxXmlOutput(out, options)
+                : new Utf8XmlOutput(out, options);
+    }
+
+    /**
+     * Creates the streaming output selected by {@link XmlWriteOptions#getBackend()} for a channel, which it does not
+     * close. Utf8XmlOutput buffers itself, so its buffer goes to the channel without another copy.
+     */
+    static XmlOutput createOutput(WritableByteChannel channel, XmlWriteOptions options) throws Exception {
+        return options.getBackend() == XmlWriteOptions.Backend.STAX
+                ? new StaxXmlOutput(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), options)
+                : new Utf8XmlOutput(channel, options);
+    }
+
+    /**
+     * Streams the API response as XML into part files of bounded size, for consumers that cannot handle one huge file.
+     * The items of one top-level collection (e.g. branches) are distributed over the parts, and every part is a complete
+     * document with the root element and the fields of the single-object groups (e.g. the company name). Other
+     * top-level collections go into the first part if the plan lists them before the split collection, into the last
+     * part otherwise, so together the parts hold every element once.
+     * <p>
+     * For {@code out/company.xml} the parts are {@code out/company-0001.xml}, {@code out/company-0002.xml}, ... and
+     * {@code out/company-manifest.xml} lists them with their item ranges. Parts are written like
+     * {@link #streamXml(MappingPlan, Object, String, XmlWriteOptions)}, including the file options;
+     * {@link XmlWriteOptions#isParallel()} is ignored, as concurrent parts take its place.
+     *
+     * @param plan           The compiled MappingPlan; may be shared between threads.
+     * @param apiResponse    The API response object.
+     * @param outputFilePath The path the part and manifest file names are derived from; nothing is written to it.
+     * @param split          Where to split and how large parts get.
+     * @param options        Formatting and file options.
+     * @return The parts, in order, as listed in the manifest.
+     * @throws Exception if an error occurs during conversion or file writing; parts already written are left in place.
+     */
+    public static List<XmlPart> streamXmlParts(MappingPlan plan, Object apiResponse, String outputFilePath,
+                                               XmlSplitOptions split, XmlWriteOptions options) throws Exception {
+        logger.debug("Streaming XML parts for: {}", outputFilePath);
+        File file = new File(outputFilePath);
+        ensureParentDirectories(file);
+        try {
+            MappingPlan.PathNode splitNode = findSplitNode(plan, split.getCollection());
+            FieldAccessor accessor = splitNode.accessorFor(apiResponse.getClass());
+            Object value = accessor.isPresent() ? accessor.get(apiResponse) : null;
+            List<?> items = value instanceof List<?> ? (List<?>) value
+                    : value != null ? Collections.singletonList(value) : Collections.emptyList();
+            int maxItems = split.getMaxItems() > 0 ? split.getMaxItems() : Integer.MAX_VALUE;
+
+            List<XmlPart> parts = new ArrayList<>();
+            if (split.getMaxBytes() <= 0 && split.isConcurrent() && items.size() > maxItems) {
+                // Item counts alone fix every part's range up front, so the parts can be written at the same time
+                ForkJoinPool pool = options.getForkJoinPool() != null ? options.getForkJoinPool() : ForkJoinPool.commonPool();
+                List<Future<XmlPart>> pending = new ArrayList<>();
+                try {
+                    for (int from = 0; from < items.size(); from += maxItems) {
+                        File partFile = partFile(file, pending.size() + 1, options.getCompression());
+                        int first = from;
+                        pending.add(pool.submit(() -> writePart(plan, apiResponse, partFile, splitNode, items, first,
+                                maxItems, 0L, options)));
+                    }
+                    for (Future<XmlPart> part : pending) {
+                        parts.add(awaitTask(part, null));
+                    }
+                } finally {
+                    for (Future<XmlPart> part : pending) {
+                        part.cancel(true);
+                    }
+                }
+            } else {
+                int from = 0;
+                do {
+                    File partFile = partFile(file, parts.size() + 1, options.getCompression());
+                    XmlPart part = writePart(plan, apiResponse, partFile, splitNode, items, from, maxItems,
+                            split.getMaxBytes(), options);
+                    parts.add(part);
+                    from += part.getItemCount();
+                } while (from < items.size());
+            }
+
+            writeManifest(partFile(file, -1, options.getCompression()), splitNode, items.size(), parts, options);
+            logger.debug("Wrote {} items of '{}' into {} parts.", items.size(), splitNode.getSegment(), parts.size());
+            return parts;
+        } catch (Exception e) {
+            logger.error("Failed to stream XML parts for '{}': {}", outputFilePath, e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The top-level node holding {@code collection}, or the first one holding the items of one group if null.
+     */
+    private static MappingPlan.PathNode findSplitNode(MappingPlan plan, String collection) {
+        for (MappingPlan.PathNode node : plan.getRootNodes()) {
+            boolean splittable = node.getGroups().size() == 1 && node.getChildren().isEmpty();
+            if (collection == null && splittable) {
+                return node;
+            }
+            if (node.getSegment().equals(collection)) {
+                if (!splittable) {
+                    throw new IllegalArgumentException("Cannot split at '" + collection
+                            + "': it does not hold the items of exactly one group.");
+                }
+                return node;
+            }
+        }
+        throw new IllegalArgumentException(collection == null ? "The plan has no top-level collection to split at."
+                : "No top-level collection '" + collection + "' in the plan.");
+    }
+
+    /**
+     * @return {@code company-0001.xml} for part 1 of {@code company.xml}, {@code company-manifest.xml} for index -1.
+     * A compression suffix stays at the end, e.g. {@code company-0001.xml.gz}; the manifest does not get it.
+     */
+    private static File partFile(File file, int index, XmlWriteOptions.Compression compression) {
+        String name = file.getName();
+        String compressionSuffix = compression.getFileSuffix();
+        if (!compressionSuffix.isEmpty() && name.endsWith(compressionSuffix)) {
+            name = name.substring(0, name.length() - compressionSuffix.length());
+        } else {
+            compressionSuffix = "";
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : ".xml";
+        if (index < 0) {
+            return new File(file.getParentFile(), base + "-manifest" + extension);
+        }
+        return new File(file.getParentFile(), base + "-" + String.format("%04d", index) + extension + compressionSuffix);
+    }
+
+    /**
+     * Writes one part file with the items from {@code from} on: at most {@code maxItems}, and if {@code maxBytes} is
+     * positive, no more than fit in that many bytes, but at least one.
+     */
+    private static XmlPart writePart(MappingPlan plan, Object apiResponse, File partFile, MappingPlan.PathNode splitNode,
+                                     List<?> items, int from, int maxItems, long maxBytes, XmlWriteOptions options) throws Exception {
+        ConversionMetrics metrics = XmlBuilder.metrics;
+        ConversionStats stats = ConversionStats.start(metrics);
+        MappingPlan.GroupPlan group = splitNode.getGroups().get(0);
+        int end = from;
+        try (FileSink sink = FileSink.open(partFile, options)) {
+            try (XmlOutput output = createOutput(sink, options)) {
+                output.startDocument();
+                output.startElement(plan.getRootXmlName());
+                writeSingleObjectGroups(output, plan, apiResponse, stats);
+                if (from == 0) {
+                    writeRootNodes(output, plan, apiResponse, splitNode, true, options, stats);
+                }
+
+                ByteArrayOutputStream buffer = maxBytes > 0 ? new ByteArrayOutputStream(8192) : null;
+                long itemBytes = 0;
+                while (end < items.size() && end - from < maxItems) {
+                    Object item = items.get(end);
+                    if (item == null) {
+                        if (stats != null) {
+                            stats.group(group)[ConversionStats.SKIPPED_NULLS]++;
+                        }
+                    } else if (buffer == null) {
+                        writeItem(output, group, item, options, stats);
+                    } else {
+                        // Rendered aside to learn its size; an item that does not fit is rendered again for the next part
+                        ConversionStats rendered = stats != null ? new ConversionStats() : null;
+                        buffer.reset();
+                        try (XmlOutput fragment = output.createFragment(buffer)) {
+                            writeItem(fragment, group, item, options, rendered);
+                            fragment.endDocument();
+                        }
+                        if (end > from && itemBytes + buffer.size() > maxBytes) {
+                            break;
+                        }
+                        output.writeFragment(buffer.toByteArray());
+                        itemBytes += buffer.size();
+                        if (stats != null) {
+                            stats.addCounters(rendered);
+                            stats.extractNanos += rendered.extractNanos;
+                            stats.convertNanos += rendered.convertNanos;
+                        }
+                    }
+                    end++;
+                }
+
+                if (end == items.size()) {
+                    writeRootNodes(output, plan, apiResponse, splitNode, false, options, stats);
+                }
+                output.endElement();
+                output.endDocument();
+            }
+            sink.commit();
+        }
+        if (stats != null) {
+            stats.reportTo(metrics);
+        }
+        logger.debug("Wrote items {} to {} into part file: {}", from, end - 1, partFile);
+        return new XmlPart(partFile.getName(), from, end - from, partFile.length());
+    }
+
+    /**
+     * Writes the top-level nodes the plan lists before the split node, or those after it.
+     */
+    private static void writeRootNodes(XmlOutput output, MappingPlan plan, Object apiResponse, MappingPlan.PathNode splitNode,
+                                       boolean beforeSplit, XmlWriteOptions options, ConversionStats stats) throws Exception {
+        boolean before = true;
+        for (MappingPlan.PathNode node : plan.getRootNodes()) {
+            if (node == splitNode) {
+                before = false;
+            } else if (before == beforeSplit) {
+                writeNode(output, node, apiResponse, options, stats);
+            }
+        }
+    }
+
+    /**
+     * Lists the parts with their item ranges, in the format of the parts.
+     */
+    private static void writeManifest(File manifestFile, MappingPlan.PathNode splitNode, int itemCount, List<XmlPart> parts,
+                                      XmlWriteOptions options) throws Exception {
+        try (FileSink sink = FileSink.open(manifestFile, options, false)) {
+            try (XmlOutput output = createOutput(sink, options)) {
+                output.startDocument();
+                output.startElement("manifest");
+                output.textElement("collection", splitNode.getSegment());
+                output.textElement("itemCount", Integer.toString(itemCount));
+                for (XmlPart part : parts) {
+                    output.startElement("part");
+                    output.textElement("file", part.getFileName());
+                    output.textElement("firstItem", Integer.toString(part.getFirstItem()));
+                    output.textElement("itemCount", Integer.toString(part.getItemCount()));
+                    output.textElement("sizeBytes", Long.toString(part.getSizeBytes()));
+                    output.endElement();
+                }
+                output.endElement();
+                output.endDocument();
+            }
+            sink.commit();
+        }
+    }
+
+    /**
+     * Writes the whole document for the API response to the given output.
+     * <p>
+     * The object graph is walked exactly once, depth first, along the plan's group tree. Each item is written
+     * inside the element of the item it was read from, so e.g. tasks end up under their own member.
+     */
+    static void writeDocument(MappingPlan plan, Object apiResponse, XmlOutput output, XmlWriteOptions options) throws Exception {
+        ConversionMetrics metrics = XmlBuilder.metrics;
+        ConversionStats stats = ConversionStats.start(metrics);
+
+        output.startDocument();
+        output.startElement(plan.getRootXmlName());
+        writeSingleObjectGroups(output, plan, apiResponse, stats);
+        for (MappingPlan.PathNode node : plan.getRootNodes()) {
+            if (options.isParallel() && output.supportsFragments()) {
+                writeGroupItemsInParallel(output, node, apiResponse, options, stats);
+            } else {
+                writeNode(output, node, apiResponse, options, stats);
+            }
+        }
+        output.endElement();
+        output.endDocument();
+
+        if (stats != null) {
+            stats.reportTo(metrics);
+        }
+    }
+
+    /**
+     * Writes the fields of the single-object groups (e.g. the company name) directly under the root element.
+     */
+    private static void writeSingleObjectGroups(XmlOutput output, MappingPlan plan, Object apiResponse,
+                                                ConversionStats stats) throws Exception {
+        for (MappingPlan.GroupPlan group : plan.getGroups()) {
+            if (group.isSingleObject()) {
+                if (stats != null) {
+                    stats.group(group)[ConversionStats.ELEMENTS]++;
+                }
+                writeFields(output, group, apiResponse, stats);
+            }
+        }
+    }
+
+    /**
+     * Writes the items of a top-level collection group, converting chunks of sibling items (e.g. branches) on a
+     * ForkJoinPool into separate fragments that are spliced into the output in their original order.
+     * Collections below {@link XmlWriteOptions#getParallelThreshold()}, and nodes that are not the items of exactly
+     * one group, are written on the calling thread.
+     */
+    private static void writeGroupItemsInParallel(XmlOutput output, MappingPlan.PathNode node, Object apiResponse,
+                                                  XmlWriteOptions options, ConversionStats stats) throws Exception {
+        if (node.getGroups().size() != 1 || !node.getChildren().isEmpty()) {
+            writeNode(output, node, apiResponse, options, stats);
+            return;
+        }
+        FieldAccessor accessor = node.accessorFor(apiResponse.getClass());
+        if (!accessor.isPresent()) {
+            writeNode(output, node, apiResponse, options, stats);
+            return;
+        }
+        Object value = read(accessor, apiResponse, stats);
+        if (!(value instanceof List<?>) || ((List<?>) value).size() < options.getParallelThreshold()) {
+            // Already read (and timed), so not read again
+            writeNodeValue(output, node, value, options, stats);
+            return;
+        }
+
+        MappingPlan.GroupPlan group = node.getGroups().get(0);
+
+        List<?> items = (List<?>) value;
+        ForkJoinPool pool = options.getForkJoinPool() != null ? options.getForkJoinPool() : ForkJoinPool.commonPool();
+        int parallelism = pool.getParallelism();
+        // A few chunks per worker balances uneven sub-trees; the window bounds how many finished fragments wait in memory
+        int chunkSize = Math.max(1, (items.size() + parallelism * 4 - 1) / (parallelism * 4));
+        int window = parallelism * 2;
+        logger.debug("Converting {} items of group '{}' in parallel, {} per chunk.", items.size(), group.getName(), chunkSize);
+
+        ConversionMetrics metrics = XmlBuilder.metrics;
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        try {
+            for (int from = 0; from < items.size(); from += chunkSize) {
+                List<?> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+                XmlOutput fragment = output.createFragment(buffer);
+                pending.add(pool.submit(() -> renderFragment(fragment, buffer, group, chunk, options, stats != null ? metrics : null)));
+                if (pending.size() >= window) {
+                    output.writeFragment(awaitTask(pending.poll(), stats));
+                }
+            }
+            while (!pending.isEmpty()) {
+                output.writeFragment(awaitTask(pending.poll(), stats));
+            }
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Renders a chunk of items into a fragment. Each chunk keeps its own stats and reports them to {@code metrics}
+     * (null when disabled) when done, since it runs on a pool thread.
+     */
+    private static byte[] renderFragment(XmlOutput fragment, ByteArrayOutputStream buffer, MappingPlan.GroupPlan group,
+                                         List<?> items, XmlWriteOptions options, ConversionMetrics metrics) throws Exception {
+        ConversionStats stats = metrics != null ? ConversionStats.start(metrics) : null;
+        try (XmlOutput out = fragment) {
+            for (Object item : items) {
+                if (item != null) {
+                    writeItem(out, group, item, options, stats);
+                } else if (stats != null) {
+                    stats.group(group)[ConversionStats.SKIPPED_NULLS]++;
+                }
+            }
+            out.endDocument();
+        }
+        if (stats != null) {
+            stats.reportTo(metrics);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static <T> T awaitTask(Future<T> future, ConversionStats stats) throws Exception {
+        long start = stats != null ? System.nanoTime() : 0L;
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        } finally {
+            if (stats != null) {
+                stats.waitNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Reads the node's segment from {@code current} and writes every object found there: as an item of the node's
+     * groups, and as one wrapper element holding whatever the node's children find below it. Groups sharing
+     * intermediate segments therefore share their wrappers, so nesting is preserved without looking elements up.
+     */
+    private static void writeNode(XmlOutput output, MappingPlan.PathNode node, Object current, XmlWriteOptions options,
+                                  ConversionStats stats) throws Exception {
+        FieldAccessor accessor = node.accessorFor(current.getClass());
+        if (!accessor.isPresent()) {
+            // Guarded: this runs once per item of the parent group, and the varargs call allocates even when disabled
+            if (logger.isDebugEnabled()) {
+                logger.debug("Field '{}' not found in class '{}'. Skipping group '{}'.",
+                        node.getSegment(), current.getClass().getName(), node.getGroup().getName());
+            }
+            return;
+        }
+        writeNodeValue(output, node, read(accessor, current, stats), options, stats);
+    }
+
+    /**
+     * Writes what was read from the node's segment, see {@link #writeNode}.
+     */
+    private static void writeNodeValue(XmlOutput output, MappingPlan.PathNode node, Object value,
+                                       XmlWriteOptions options, ConversionStats stats) throws Exception {
+        if (value == null) {
+            if (stats != null) {
+                stats.group(node.getGroup())[ConversionStats.SKIPPED_NULLS]++;
+            }
+            return;
+        }
+
+        if (value instanceof List<?>) {
+            for (Object item : (List<?>) value) {
+                if (item != null) {
+                    writePathObject(output, node, item, options, stats);
+                } else if (stats != null) {
+                    stats.group(node.getGroup())[ConversionStats.SKIPPED_NULLS]++;
+                }
+            }
+        } else {
+            writePathObject(output, node, value, options, stats);
+        }
+    }
+
+    private static void writePathObject(XmlOutput output, MappingPlan.PathNode node, Object object,
+                                        XmlWriteOptions options, ConversionStats stats) throws Exception {
+        for (MappingPlan.GroupPlan group : node.getGroups()) {
+            writeItem(output, group, object, options, stats);
+        }
+        if (!node.getChildren().isEmpty()) {
+            output.startElement(node.getXmlName());
+            for (MappingPlan.PathNode child : node.getChildren()) {
+                writeNode(output, child, object, options, stats);
+            }
+            output.endElement();
+        }
+    }
+
+    /**
+     * Writes one item of a collection group, through the {@link XmlWriteOptions#getFragmentCache()} if one is set and
+     * the group has child groups.
+     */
+    private static void writeItem(XmlOutput output, MappingPlan.GroupPlan group, Object item, XmlWriteOptions options,
+                                  ConversionStats stats) throws Exception {
+        FragmentCache cache = options.getFragmentCache();
+        if (cache != null && output.supportsFragments() && !group.getChildNodes().isEmpty()) {
+            writeCachedItem(output, group, item, cache, options, stats);
+        } else {
+            writeItemElement(output, group, item, options, stats);
+        }
+    }
+
+    /**
+     * Writes one item of a collection group: its fields, then the items of its child groups.
+     */
+    private static void writeItemElement(XmlOutput output, MappingPlan.GroupPlan group, Object item, XmlWriteOptions options,
+                                         ConversionStats stats) throws Exception {
+        if (stats != null) {
+            stats.group(group)[ConversionStats.ELEMENTS]++;
+        }
+        output.startElement(group.getXmlName());
+        writeFields(output, group, item, stats);
+        for (MappingPlan.PathNode child : group.getChildNodes()) {
+            writeNode(output, child, item, options, stats);
+        }
+        output.endElement();
+    }
+
+    /**
+     * Writes an item through the fragment cache: snapshots the values it would be written from, then splices in the
+     * cached bytes, or renders the item into a fragment and caches that. A hit adds the counters rendering it added.
+     */
+    private static void writeCachedItem(XmlOutput output, MappingPlan.GroupPlan group, Object item, FragmentCache cache,
+                                        XmlWriteOptions options, ConversionStats stats) throws Exception {
+        ValueSnapshot snapshot = new ValueSnapshot();
+        snapshotItem(snapshot, group, item);
+        FragmentCache.Key key = new FragmentCache.Key(group, snapshot.hash(), options.isPrettyPrint() ? options.getIndent() : -1);
+        FragmentCache.Entry entry = cache.get(key, snapshot, stats != null);
+        if (entry != null) {
+            if (stats != null) {
+                stats.addCounters(entry.counters);
+            }
+        } else {
+            ConversionStats rendered = stats != null ? new ConversionStats() : null;
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+            try (XmlOutput fragment = output.createFragment(buffer)) {
+                writeItemElement(fragment, group, item, options, rendered);
+                fragment.endDocument();
+            }
+            if (stats != null) {
+                stats.addCounters(rendered);
+                stats.extractNanos += rendered.extractNanos;
+                stats.convertNanos += rendered.convertNanos;
+            }
+            entry = cache.put(key, snapshot, buffer.toByteArray(), rendered);
+        }
+        output.writeFragment(entry.bytes);
+    }
+
+    /**
+     * Adds the values {@link #writeItemElement} reads from the item, in the same order, with list sizes and classes, so
+     * that equal snapshots mean equal output. Nothing is converted.
+     */
+    private static void snapshotItem(ValueSnapshot snapshot, MappingPlan.GroupPlan group, Object item) throws Exception {
+        // The class decides which fields and child segments are present
+        snapshot.add(item.getClass());
+        // Indexed loops: this walk is recursive, so iterators over the plan's lists are not optimized away
+        List<MappingPlan.FieldPlan> fields = group.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            MappingPlan.FieldPlan field = fields.get(i);
+            FieldAccessor accessor = field.accessorFor(item.getClass());
+            if (accessor.isPresent()) {
+                snapshotValue(snapshot, accessor.get(item));
+            }
+        }
+        List<MappingPlan.PathNode> childNodes = group.getChildNodes();
+        for (int i = 0; i < childNodes.size(); i++) {
+            snapshotNode(snapshot, childNodes.get(i), item);
+        }
+    }
+
+    private static void snapshotNode(ValueSnapshot snapshot, MappingPlan.PathNode node, Object current) throws Exception {
+        FieldAccessor accessor = node.accessorFor(current.getClass());
+        if (!accessor.isPresent()) {
+            return;
+        }
+        Object value = accessor.get(current);
+        if (value instanceof List<?>) {
+            List<?> items = (List<?>) value;
+            snapshot.addListSize(items.size());
+            for (Object item : items) {
+                if (item == null) {
+                    snapshot.add(null);
+                } else {
+                    snapshotPathObject(snapshot, node, item);
+                }
+            }
+        } else if (value == null) {
+            snapshot.add(null);
+        } else {
+            snapshotPathObject(snapshot, node, value);
+        }
+    }
+
+    private static void snapshotPathObject(ValueSnapshot snapshot, MappingPlan.PathNode node, Object object) throws Exception {
+        if (node.getGroups().isEmpty()) {
+            snapshot.add(object.getClass());
+        }
+        List<MappingPlan.GroupPlan> groups = node.getGroups();
+        for (int i = 0; i < groups.size(); i++) {
+            snapshotItem(snapshot, groups.get(i), object);
+        }
+        List<MappingPlan.PathNode> children = node.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            snapshotNode(snapshot, children.get(i), object);
+        }
+    }
+
+    /**
+     * Adds a field value; a list is added as its size and elements, so lists are compared by content.
+     */
+    private static void snapshotValue(ValueSnapshot snapshot, Object value) {
+        if (value instanceof List<?>) {
+            List<?> items = (List<?>) value;
+            snapshot.addListSize(items.size());
+            for (Object item : items) {
+                snapshot.add(item);
+            }
+        } else {
+            snapshot.add(value);
+        }
+    }
+
+    /**
+     * Writes the group's fields of one object. Missing fields, null values and values that fail conversion are skipped,
+     * and counted in {@code stats} when metrics are enabled.
+     */
+    private static void writeFields(XmlOutput output, MappingPlan.GroupPlan group, Object item, ConversionStats stats) throws Exception {
+        long[] counts = stats != null ? stats.group(group) : null;
+        for (MappingPlan.FieldPlan field : group.getFields()) {
+            FieldAccessor accessor = field.accessorFor(item.getClass());
+            if (!accessor.isPresent()) {
+                continue;
+            }
+            Object fieldValue = read(accessor, item, stats);
+            if (fieldValue == null) {
+                if (counts != null) {
+                    counts[ConversionStats.SKIPPED_NULLS]++;
+                }
+                continue;
+            }
+
+            if (field.isList()) {
+                if (!(fieldValue instanceof List<?>)) {
+                    continue;
+                }
+                for (Object listItem : (List<?>) fieldValue) {
+                    if (listItem == null) {
+                        if (counts != null) {
+                            counts[ConversionStats.SKIPPED_NULLS]++;
+                        }
+                    } else if (!writeFieldValue(output, field, listItem, stats) && counts != null) {
+                        counts[ConversionStats.CONVERSION_FAILURES]++;
+                    }
+                }
+            } else if (!writeFieldValue(output, field, fieldValue, stats) && counts != null) {
+                counts[ConversionStats.CONVERSION_FAILURES]++;
+            }
+        }
+    }
+
+    /**
+     * @return false if the value could not be converted and was skipped.
+     */
+    private static boolean writeFieldValue(XmlOutput output, MappingPlan.FieldPlan field, Object value,
+                                           ConversionStats stats) throws Exception {
+        StringBuilder text = output.textBuffer();
+        boolean converted;
+        if (stats == null) {
+            converted = field.getConverter().convert(value, text);
+        } else {
+            long start = System.nanoTime();
+            converted = field.getConverter().convert(value, text);
+            stats.convertNanos += System.nanoTime() - start;
+        }
+        if (!converted) {
+            // Guarded: bad values can be frequent in large responses, and the varargs call allocates even when disabled
+            if (logger.isDebugEnabled()) {
+                logger.debug("Skipping field '{}': cannot convert '{}' to {}.", field.getApiFieldName(), value, field.getXmlDataType());
+            }
+            return false;
+        }
+        output.textElement(field.getXmlName(), text);
+        return true;
+    }
+
+    /**
+     * Reads a value through the accessor, adding the time to {@link ConversionStats#extractNanos} when measuring.
+     */
+    private static Object read(FieldAccessor accessor, Object object, ConversionStats stats) throws Exception {
+        if (stats == null) {
+            return accessor.get(object);
+        }
+        long start = System.nanoTime();
+        try {
+            return accessor.get(object);
+        } finally {
+            stats.extractNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Creates a new XML Document with the calling thread's cached DocumentBuilder.
+     */
+    private static Document createNewDocument() {
+        return DOCUMENT_BUILDER.get().newDocument();
+    }
+
+    private static DocumentBuilder newDocumentBuilder() {
+        // JAXP factories are not guaranteed to be thread-safe, and threads create their builders concurrently
+        synchronized (DOCUMENT_BUILDER_FACTORY) {
+            try {
+                // Optional: factory.setNamespaceAware(true);
+                return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new IllegalStateException("Cannot create a DocumentBuilder: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * The output properties of DOM mode: pretty printed with an indent of 4, with a UTF-8 XML declaration.
+     */
+    private static Properties domOutputProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(OutputKeys.INDENT, "yes");
+        properties.setProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        properties.setProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
+        properties.setProperty(OutputKeys.ENCODING, "UTF-8");
+        return properties;
+    }
+
+    private static Transformer newDomTransformer() {
+        synchronized (TRANSFORMER_FACTORY) {
+            try {
+                Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+                transformer.setOutputProperties(DOM_OUTPUT_PROPERTIES);
+                return transformer;
+            } catch (TransformerConfigurationException e) {
+                throw new IllegalStateException("Cannot create a Transformer: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Serializes the Document with the calling thread's cached Transformer. A Transformer that failed is discarded,
+     * since its state is unspecified afterwards.
+     */
+    private static void transformDocument(Document document, Result result) throws TransformerException {
+        Transformer transformer = DOM_TRANSFORMER.get();
+        try {
+            transformer.transform(new DOMSource(document), result);
+        } catch (TransformerException | RuntimeException e) {
+            DOM_TRANSFORMER.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * Transforms an XML Document to a formatted String.
+     */
+    private static String transformDocumentToString(Document document) throws TransformerException {
+        StringWriter writer = new StringWriter();
+        transformDocument(document, new StreamResult(writer));
+        return writer.getBuffer().toString();
+    }
+
+    /**
+     * Writes the Document to a file, indented like {@link #transformDocumentToString(Document)}.
+     *
+     * @param document       The XML document.
+     * @param outputFilePath The file path where the XML will be written.
+     * @throws Exception if an error occurs during file writing.
+     */
+    private static void writeXmlToFile(Document document, String outputFilePath) throws Exception {
+        logger.debug("Writing XML content to file: {}", outputFilePath);
+        File file = new File(outputFilePath);
+        ensureParentDirectories(file);
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024)) {
+            transformDocument(document, new StreamResult(out));
+        }
+    }
+
+    /**
+     * Ensures the parent directories of the output file exist.
+     */
+    private static void ensureParentDirectories(File file) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            boolean dirsCreated = parent.mkdirs();
+            if (dirsCreated) {
+                logger.debug("Created parent directories for file '{}'", file.getPath());
+            } else {
+                logger.warn("Failed to create parent directories for file '{}'", file.getPath());
+            }
+        }
+    }
+}
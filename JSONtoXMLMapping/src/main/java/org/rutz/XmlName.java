@@ -0,0 +1,51 @@
+package org.rutz;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * An element name together with its start and end tags encoded as UTF-8. Created once per xmlPath segment when a
+ * {@link MappingPlan} is compiled, so outputs that write bytes ({@link Utf8XmlOutput}) copy tags instead of encoding
+ * them for every element.
+ * <p>
+ * Instances are immutable. Names are not validated, just as StAX writers do not validate them.
+ */
+public final class XmlName {
+
+    private final String name;
+    private final byte[] startTag;
+    private final byte[] endTag;
+
+    private XmlName(String name) {
+        this.name = name;
+        this.startTag = ("<" + name + ">").getBytes(StandardCharsets.UTF_8);
+        this.endTag = ("</" + name + ">").getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static XmlName of(String name) {
+        return new XmlName(Objects.requireNonNull(name, "name"));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The encoded {@code <name>}; must not be modified.
+     */
+    byte[] startTag() {
+        return startTag;
+    }
+
+    /**
+     * @return The encoded {@code </name>}; must not be modified.
+     */
+    byte[] endTag() {
+        return endTag;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,110 @@
+package org.rutz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Receives the elements of an XML document in document order, as {@link XmlBuilder} walks the API response.
+ * Implementations decide how (and whether) the document is materialized.
+ */
+public interface XmlOutput extends AutoCloseable {
+
+    /**
+     * Writes the XML declaration. Called once, before the root element.
+     */
+    void startDocument() throws Exception;
+
+    /**
+     * Opens an element as a child of the currently open element.
+     */
+    void startElement(String name) throws Exception;
+
+    /**
+     * Opens an element whose name was prepared when the plan was compiled. Outputs that write bytes override this
+     * to copy the pre-encoded tag.
+     */
+    default void startElement(XmlName name) throws Exception {
+        startElement(name.getName());
+    }
+
+    /**
+     * Writes escaped character data into the currently open element.
+     */
+    void text(String value) throws Exception;
+
+    /**
+     * Closes the most recently opened element.
+     */
+    void endElement() throws Exception;
+
+    /**
+     * Completes the document and flushes any buffered output. Called once, after the root element is closed.
+     */
+    void endDocument() throws Exception;
+
+    /**
+     * Writes an element containing only the given text.
+     */
+    default void textElement(String name, String value) throws Exception {
+        startElement(name);
+        text(value);
+        endElement();
+    }
+
+    /**
+     * Writes an element containing only the given text. Outputs that can write characters directly override this,
+     * so converted values never become Strings.
+     */
+    default void textElement(String name, CharSequence value) throws Exception {
+        textElement(name, value.toString());
+    }
+
+    /**
+     * Writes an element containing only the given text, see {@link #startElement(XmlName)}.
+     */
+    default void textElement(XmlName name, CharSequence value) throws Exception {
+        textElement(name.getName(), value);
+    }
+
+    /**
+     * Returns an empty buffer to convert a value into before passing it to {@link #textElement(String, CharSequence)}.
+     * Outputs may return the same instance every time, so it is only valid until the next call.
+     */
+    default StringBuilder textBuffer() {
+        return new StringBuilder();
+    }
+
+    /**
+     * @return true if this output can render sub-trees into separate byte fragments and splice them back in,
+     * see {@link #createFragment(OutputStream)} and {@link #writeFragment(byte[])}.
+     */
+    default boolean supportsFragments() {
+        return false;
+    }
+
+    /**
+     * Creates an output that writes sibling elements into {@code out} exactly as this output would write them at its
+     * current position (same encoding, escaping and indentation), without an XML declaration. Fragment outputs are
+     * completed with {@link #endDocument()}, which only flushes them.
+     *
+     * @param out The buffer receiving the fragment's bytes.
+     * @return The fragment output; may be used from another thread.
+     */
+    default XmlOutput createFragment(OutputStream out) throws Exception {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support fragments");
+    }
+
+    /**
+     * Writes bytes produced by a fragment of this output as children of the currently open element.
+     */
+    default void writeFragment(byte[] fragment) throws Exception {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support fragments");
+    }
+
+    /**
+     * Releases resources held by the output. Does not close the underlying stream.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,18 @@
+package org.rutz;
+
+import lombok.Value;
+
+/**
+ * One file written by {@link XmlBuilder#streamXmlParts}, as listed in its manifest. Items are numbered from 0 in the
+ * order of the split collection.
+ */
+@Value
+public class XmlPart {
+    String fileName;
+    int firstItem;
+    int itemCount;
+    /**
+     * The size of the file on disk, after compression if any.
+     */
+    long sizeBytes;
+}
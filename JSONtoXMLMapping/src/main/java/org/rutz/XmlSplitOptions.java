@@ -0,0 +1,40 @@
+package org.rutz;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Options for {@link XmlBuilder#streamXmlParts}: which collection a document is split at and how large a part gets.
+ * A new part starts when either limit is reached; with neither set, the whole document is one part.
+ */
+@Value
+@Builder
+public class XmlSplitOptions {
+
+    /**
+     * The API field of the top-level collection whose items are distributed over the parts, e.g. "branches";
+     * null means the first top-level collection of the plan.
+     */
+    @Builder.Default
+    String collection = null;
+
+    /**
+     * Start a new part after this many items; 0 for no limit.
+     */
+    @Builder.Default
+    int maxItems = 0;
+
+    /**
+     * Start a new part before an item that would take the serialized items of a part over this many bytes; 0 for no
+     * limit. A part always gets at least one item, so a single large item can exceed it.
+     */
+    @Builder.Default
+    long maxBytes = 0;
+
+    /**
+     * Write the parts at the same time on {@link XmlWriteOptions#getForkJoinPool()}. Only parts bounded by
+     * {@link #getMaxItems()} alone can be, since byte bounds are only known once the items are written.
+     */
+    @Builder.Default
+    boolean concurrent = true;
+}
@@ -0,0 +1,165 @@
+package org.rutz;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+/**
+ * Options for the streaming output modes of {@link XmlBuilder}.
+ */
+@Value
+@Builder
+public class XmlWriteOptions {
+
+    /**
+     * Indent nested elements, one per line. When false the document is written without any whitespace.
+     */
+    @Builder.Default
+    boolean prettyPrint = true;
+
+    /**
+     * Number of spaces per nesting level when pretty printing.
+     */
+    @Builder.Default
+    int indent = 4;
+
+    /**
+     * Convert the items of large top-level collections (e.g. branches) in parallel. Output is byte-identical to
+     * sequential conversion. Only outputs that support fragments (streaming modes) are parallelized.
+     */
+    @Builder.Default
+    boolean parallel = false;
+
+    /**
+     * Minimum number of items a top-level collection must have before it is converted in parallel;
+     * smaller documents stay on the calling thread.
+     */
+    @Builder.Default
+    int parallelThreshold = 64;
+
+    /**
+     * The pool parallel conversion, concurrent parts and parallel compression run on; null means
+     * {@link ForkJoinPool#commonPool()}.
+     */
+    @Builder.Default
+    ForkJoinPool forkJoinPool = null;
+
+    /**
+     * The writer used by the streaming modes. Both write the same bytes for the same document.
+     */
+    @Builder.Default
+    Backend backend = Backend.UTF8;
+
+    /**
+     * Reuse the serialized XML of items that did not change since an earlier conversion with the same cache, see
+     * {@link FragmentCache}; null disables it. Used by {@link XmlBuilder#streamXml}, not by JSON streaming.
+     */
+    @Builder.Default
+    FragmentCache fragmentCache = null;
+
+    /**
+     * When streaming to a file, write a temporary file next to it and rename that over the file once the document is
+     * complete, so readers never see a partial document and a failed conversion leaves the previous file in place.
+     */
+    @Builder.Default
+    boolean atomicFileWrite = false;
+
+    /**
+     * When streaming to a file, force its contents to disk before returning; with {@link #isAtomicFileWrite()} also
+     * the rename.
+     */
+    @Builder.Default
+    boolean fsync = false;
+
+    /**
+     * Size of the direct buffer a file is written from when streaming to a file. Larger buffers mean fewer, larger
+     * writes; the buffer bounds the memory the output takes, whatever the size of the document.
+     */
+    @Builder.Default
+    int fileBufferSize = 1024 * 1024;
+
+    /**
+     * Compress the streamed output, to streams and files alike. File names are used as given; the manifest of split
+     * output is not compressed.
+     */
+    @Builder.Default
+    Compression compression = Compression.NONE;
+
+    /**
+     * Deflate level from 0 (none) to 9 (best); -1 is zlib's default, 6.
+     */
+    @Builder.Default
+    int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Compress blocks of {@link #getCompressionBlockSize()} on {@link #getForkJoinPool()} at the same time, like pigz.
+     * Gzip output then consists of one gzip member per block, which gzip readers handle like a single member.
+     */
+    @Builder.Default
+    boolean parallelCompression = false;
+
+    /**
+     * Size of the blocks parallel compression cuts the output into, at least 32 KB. Every block costs a little
+     * compression ratio; a few blocks per core are needed for the cores to be used.
+     */
+    @Builder.Default
+    int compressionBlockSize = 1024 * 1024;
+
+    /**
+     * @return Pretty printed output with the default indent.
+     */
+    public static XmlWriteOptions defaults() {
+        return builder().build();
+    }
+
+    /**
+     * @return Output without indentation or line breaks.
+     */
+    public static XmlWriteOptions compact() {
+        return builder().prettyPrint(false).build();
+    }
+
+    /**
+     * Compression formats of the streamed output.
+     */
+    public enum Compression {
+        NONE(""),
+        /**
+         * gzip (RFC 1952).
+         */
+        GZIP(".gz"),
+        /**
+         * Raw deflate (RFC 1951), without header or checksum.
+         */
+        DEFLATE(".deflate");
+
+        private final String fileSuffix;
+
+        Compression(String fileSuffix) {
+            this.fileSuffix = fileSuffix;
+        }
+
+        /**
+         * @return The conventional file name suffix, e.g. ".gz"; empty for NONE.
+         */
+        public String getFileSuffix() {
+            return fileSuffix;
+        }
+    }
+
+    /**
+     * Output backends of the streaming modes.
+     */
+    public enum Backend {
+        /**
+         * {@link StaxXmlOutput}: the JDK StAX writer.
+         */
+        STAX,
+        /**
+         * {@link Utf8XmlOutput}: escapes and encodes into a pooled byte buffer, and writes files through a FileChannel.
+         */
+        UTF8
+    }
+}
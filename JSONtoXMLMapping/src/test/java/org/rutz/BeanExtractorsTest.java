@@ -0,0 +1,66 @@
+package org.rutz;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BeanExtractorsTest {
+
+    @Test
+    void readsFieldsThroughTheGeneratedExtractor() throws Exception {
+        Company.Task task = Company.Task.builder().taskId("T1").description("Fix").status("Open").build();
+
+        FieldAccessor accessor = BeanExtractors.forField(Company.Task.class, "description");
+        assertNotNull(accessor);
+        assertEquals("Fix", accessor.get(task));
+    }
+
+    /**
+     * The class is already defined by the first computation, as it is for every thread that loses the race.
+     */
+    @Test
+    void reusesTheExtractorClassWhenGeneratedAgain() {
+        BeanExtractors.Generated first = BeanExtractors.generate(Company.Campaign.class);
+        BeanExtractors.Generated second = BeanExtractors.generate(Company.Campaign.class);
+
+        assertNotNull(first.extractor);
+        assertNotNull(second.extractor);
+        assertSame(first.extractor.getClass(), second.extractor.getClass());
+        assertEquals(first.slots, second.slots);
+        Company.Campaign campaign = Company.Campaign.builder().campaignId("C1").name("Launch").status("Ongoing").build();
+        assertEquals("Launch", second.extractor.get(campaign, second.slots.get("name")));
+    }
+
+    @Test
+    void generatesOnceForConcurrentCallers() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<BeanExtractors.Generated>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Callable<BeanExtractors.Generated> generate = () -> {
+                    start.await();
+                    return BeanExtractors.generate(Company.Team.class);
+                };
+                results.add(executor.submit(generate));
+            }
+            start.countDown();
+            for (Future<BeanExtractors.Generated> result : results) {
+                assertNotNull(result.get().extractor);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.rutz;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressingOutputStreamTest {
+
+    private static final int BLOCK_SIZE = 32 * 1024;
+    // Blocks are compressed in parallel even where the machine has a single core
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private static MappingPlan plan;
+    private static Company company;
+    private static byte[] uncompressed;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void writeUncompressed() throws Exception {
+        plan = TestCompanies.plan();
+        company = TestCompanies.generate(24, 4, 6, 4);
+        uncompressed = streamXml(XmlWriteOptions.compact());
+        // Enough for several parallel blocks
+        assertTrue(uncompressed.length > 8 * BLOCK_SIZE);
+    }
+
+    @AfterAll
+    static void shutDownPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    void writesGzip() throws Exception {
+        assertArrayEquals(uncompressed, gunzip(streamXml(options(XmlWriteOptions.Compression.GZIP, false))));
+    }
+
+    @Test
+    void writesParallelGzipAsConcatenatedMembers() throws Exception {
+        byte[] compressed = streamXml(options(XmlWriteOptions.Compression.GZIP, true));
+
+        assertArrayEquals(uncompressed, gunzip(compressed));
+        int members = 0;
+        for (int i = 0; i + 2 < compressed.length; i++) {
+            if (compressed[i] == 0x1f && compressed[i + 1] == (byte) 0x8b && compressed[i + 2] == 8) {
+                members++;
+            }
+        }
+        assertTrue(members >= uncompressed.length / BLOCK_SIZE, members + " gzip headers");
+    }
+
+    @Test
+    void writesRawDeflate() throws Exception {
+        assertArrayEquals(uncompressed, inflate(streamXml(options(XmlWriteOptions.Compression.DEFLATE, false))));
+    }
+
+    @Test
+    void writesParallelRawDeflateAsOneStream() throws Exception {
+        assertArrayEquals(uncompressed, inflate(streamXml(options(XmlWriteOptions.Compression.DEFLATE, true))));
+    }
+
+    @Test
+    void compressesFilesAndParts() throws Exception {
+        XmlWriteOptions options = options(XmlWriteOptions.Compression.GZIP, true);
+        File file = new File(directory.toFile(), "company.xml.gz");
+        XmlBuilder.streamXml(plan, company, file.getPath(), options);
+        assertArrayEquals(uncompressed, gunzip(Files.readAllBytes(file.toPath())));
+
+        XmlSplitOptions split = XmlSplitOptions.builder().collection("branches").maxItems(10).build();
+        List<XmlPart> parts = XmlBuilder.streamXmlParts(plan, company,
+                new File(directory.toFile(), "parts.xml.gz").getPath(), split, options);
+        assertEquals(3, parts.size());
+        for (XmlPart part : parts) {
+            assertTrue(part.getFileName().endsWith(".xml.gz"), part.getFileName());
+            byte[] compressed = Files.readAllBytes(directory.resolve(part.getFileName()));
+            assertEquals(compressed.length, part.getSizeBytes());
+            assertTrue(gunzip(compressed).length > 0);
+        }
+        // The manifest is not compressed
+        assertTrue(Files.readString(directory.resolve("parts-manifest.xml")).contains("<manifest>"));
+    }
+
+    @Test
+    void abortWritesNothingMoreAndStopsFurtherWrites() throws Exception {
+        for (boolean parallel : new boolean[]{false, true}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            OutputStream compressing = CompressingOutputStream.wrap(out, options(XmlWriteOptions.Compression.GZIP, parallel));
+            compressing.write(uncompressed, 0, 3 * BLOCK_SIZE);
+            int written = out.size();
+
+            CompressingOutputStream.abort(compressing);
+            CompressingOutputStream.finish(compressing);
+
+            assertEquals(written, out.size());
+            assertThrows(IOException.class, () -> compressing.write(uncompressed, 0, 1));
+        }
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> streamXml(XmlWriteOptions.builder()
+                .compression(XmlWriteOptions.Compression.GZIP).parallelCompression(true).compressionBlockSize(0).build()));
+        assertThrows(IllegalArgumentException.class, () -> streamXml(XmlWriteOptions.builder()
+                .compression(XmlWriteOptions.Compression.DEFLATE).parallelCompression(true).compressionBlockSize(-1).build()));
+        assertThrows(IllegalArgumentException.class, () -> streamXml(XmlWriteOptions.builder()
+                .compression(XmlWriteOptions.Compression.GZIP).compressionLevel(10).build()));
+    }
+
+    private static XmlWriteOptions options(XmlWriteOptions.Compression compression, boolean parallel) {
+        return XmlWriteOptions.builder().prettyPrint(false).compression(compression).parallelCompression(parallel)
+                .compressionBlockSize(BLOCK_SIZE).forkJoinPool(POOL).build();
+    }
+
+    private static byte[] streamXml(XmlWriteOptions options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlBuilder.streamXml(plan, company, out, options);
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed), inflater)) {
+            byte[] inflated = in.readAllBytes();
+            assertTrue(inflater.finished(), "deflate stream is complete");
+            return inflated;
+        } finally {
+            inflater.end();
+        }
+    }
+}
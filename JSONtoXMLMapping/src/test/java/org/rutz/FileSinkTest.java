@@ -0,0 +1,111 @@
+package org.rutz;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileSinkTest {
+
+    private static final byte[] PREVIOUS = "<previous/>".getBytes(StandardCharsets.UTF_8);
+
+    private static MappingPlan plan;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void compilePlan() throws Exception {
+        plan = TestCompanies.plan();
+    }
+
+    @Test
+    void commitReplacesTheTarget() throws Exception {
+        Company company = TestCompanies.generate(4, 2, 3, 2);
+        Path target = directory.resolve("company.xml");
+        Files.write(target, PREVIOUS);
+
+        XmlBuilder.streamXml(plan, company, target.toString(), atomic(XmlWriteOptions.Compression.NONE, false));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        XmlBuilder.streamXml(plan, company, expected, XmlWriteOptions.compact());
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(target));
+        assertEquals(List.of("company.xml"), fileNames());
+    }
+
+    @Test
+    void failureMidDocumentKeepsThePreviousFile() throws Exception {
+        assertKeepsThePreviousFile(atomic(XmlWriteOptions.Compression.NONE, false));
+    }
+
+    @Test
+    void failureMidCompressedDocumentKeepsThePreviousFile() throws Exception {
+        assertKeepsThePreviousFile(atomic(XmlWriteOptions.Compression.GZIP, false));
+        assertKeepsThePreviousFile(atomic(XmlWriteOptions.Compression.GZIP, true));
+    }
+
+    @Test
+    void closingWithoutCommitDeletesTheTemporaryFile() throws Exception {
+        Path target = directory.resolve("company.xml");
+        Files.write(target, PREVIOUS);
+
+        try (FileSink sink = FileSink.open(target.toFile(), atomic(XmlWriteOptions.Compression.GZIP, false))) {
+            sink.write(ByteBuffer.wrap(new byte[64 * 1024]));
+            assertEquals(2, fileNames().size());
+        }
+
+        assertArrayEquals(PREVIOUS, Files.readAllBytes(target));
+        assertEquals(List.of("company.xml"), fileNames());
+    }
+
+    private void assertKeepsThePreviousFile(XmlWriteOptions options) throws Exception {
+        Path target = directory.resolve("company.xml");
+        Files.write(target, PREVIOUS);
+        // Far enough into the document that some of it has reached the temporary file
+        Company company = TestCompanies.generate(24, 4, 6, 4);
+        List<Company.Member> members = company.getBranches().get(20).getTeams().get(0).getMembers();
+        members.set(0, new Company.Member() {
+            @Override
+            public String getId() {
+                throw new IllegalStateException("Source failed");
+            }
+        });
+
+        Exception e = assertThrows(Exception.class, () -> XmlBuilder.streamXml(plan, company, target.toString(), options));
+
+        assertTrue(String.valueOf(e.getMessage()).contains("Source failed"), e::toString);
+        assertArrayEquals(PREVIOUS, Files.readAllBytes(target));
+        assertEquals(List.of("company.xml"), fileNames());
+    }
+
+    private static XmlWriteOptions atomic(XmlWriteOptions.Compression compression, boolean parallel) {
+        return XmlWriteOptions.builder()
+                .prettyPrint(false)
+                .atomicFileWrite(true)
+                .fileBufferSize(8 * 1024)
+                .compression(compression)
+                .parallelCompression(parallel)
+                .compressionBlockSize(32 * 1024)
+                .build();
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.rutz;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FragmentCacheTest {
+
+    private static MappingPlan plan;
+
+    @BeforeAll
+    static void compilePlan() throws Exception {
+        plan = TestCompanies.plan();
+    }
+
+    @Test
+    void splicesUnchangedItemsFromTheCache() throws Exception {
+        FragmentCache cache = new FragmentCache(16 * 1024 * 1024);
+        XmlWriteOptions options = XmlWriteOptions.builder().fragmentCache(cache).build();
+        Company company = TestCompanies.generate(3, 2, 3, 2);
+        String expected = streamXml(company, XmlWriteOptions.defaults());
+
+        assertEquals(expected, streamXml(company, options));
+        long misses = cache.getMisses();
+        assertEquals(0, cache.getHits());
+
+        // A different but equal graph: only the three branches are looked up, and all of them hit
+        assertEquals(expected, streamXml(TestCompanies.generate(3, 2, 3, 2), options));
+        assertEquals(3, cache.getHits());
+        assertEquals(misses, cache.getMisses());
+    }
+
+    @Test
+    void rewritesOnlyTheItemsAboveAChangedMember() throws Exception {
+        FragmentCache cache = new FragmentCache(16 * 1024 * 1024);
+        XmlWriteOptions options = XmlWriteOptions.builder().fragmentCache(cache).build();
+        streamXml(TestCompanies.generate(3, 2, 3, 2), options);
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+
+        Company changed = TestCompanies.generate(3, 2, 3, 2);
+        changed.getBranches().get(1).getTeams().get(0).getMembers().get(2).setName("Renamed <member>");
+        assertEquals(streamXml(changed, XmlWriteOptions.defaults()), streamXml(changed, options));
+
+        // Its branch, team and the member miss; the other two branches, the other team and the other two members hit
+        assertEquals(misses + 3, cache.getMisses());
+        assertEquals(hits + 5, cache.getHits());
+    }
+
+    @Test
+    void staysWithinItsCapacity() throws Exception {
+        FragmentCache cache = new FragmentCache(64 * 1024);
+        XmlWriteOptions options = XmlWriteOptions.builder().prettyPrint(false).fragmentCache(cache).build();
+        Company company = TestCompanies.generate(20, 3, 5, 2);
+
+        assertEquals(streamXml(company, XmlWriteOptions.compact()), streamXml(company, options));
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.getSizeBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    void storesCopiesOfValuesOnly() {
+        ValueSnapshot snapshot = new ValueSnapshot();
+        Date date = new Date(0);
+        snapshot.add("text");
+        snapshot.add(date);
+        Object[] stored = snapshot.toStoredValues();
+        assertEquals("text", stored[0]);
+        assertEquals(date, stored[1]);
+        assertNotSame(date, stored[1]);
+
+        // Any other object could keep the caller's graph alive
+        snapshot.add(new StringBuilder("mutable"));
+        assertNull(snapshot.toStoredValues());
+    }
+
+    private static String streamXml(Company company, XmlWriteOptions options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlBuilder.streamXml(plan, company, out, options);
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+}
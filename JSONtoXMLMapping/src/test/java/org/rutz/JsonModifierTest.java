@@ -0,0 +1,92 @@
+package org.rutz;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonModifierTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void copiesProjectsOfMatchingObjects() throws Exception {
+        String json = "{\"employees\":["
+                + "{\"name\":\"Ann\",\"role\":\"Software Engineer\",\"projects\":[{\"id\":1,\"budget\":1.50}]},"
+                + "{\"name\":\"Bob\",\"role\":\"Manager\",\"projects\":[{\"id\":2}]}]}";
+
+        String expected = "{\"employees\":["
+                + "{\"name\":\"Ann\",\"role\":\"Software Engineer\",\"projects\":[{\"id\":1,\"budget\":1.50}],"
+                + "\"projects_copied\":[{\"id\":1,\"budget\":1.50,\"Copied_field_role\":\"Software Engineer\"}]},"
+                + "{\"name\":\"Bob\",\"role\":\"Manager\",\"projects\":[{\"id\":2}]}]}";
+        assertEquals(expected, modify(json));
+    }
+
+    @Test
+    void matchesTheConditionAfterTheProjects() throws Exception {
+        String json = "{\"team\":{\"projects\":[{\"id\":1}],\"role\":\"Software Engineer\"}}";
+
+        assertEquals(MAPPER.readTree("{\"team\":{\"projects\":[{\"id\":1}],\"role\":\"Software Engineer\","
+                        + "\"projects_copied\":[{\"id\":1,\"Copied_field_role\":\"Software Engineer\"}]}}"),
+                MAPPER.readTree(modify(json)));
+    }
+
+    @Test
+    void leavesDocumentsWithoutMatchesUnchanged() throws Exception {
+        String json = "{\"employees\":[{\"role\":\"Manager\",\"projects\":[]},{\"projects\":null}],\"count\":2}";
+
+        assertEquals(json, modify(json));
+    }
+
+    /**
+     * 200k levels of nesting on a 512 KB stack, which a recursive transform would overflow.
+     */
+    @Test
+    void transformsDeeplyNestedInputOnASmallStack() throws Exception {
+        int depth = 200_000;
+        String match = "{\"role\":\"Software Engineer\",\"projects\":[{\"id\":1}]}";
+        String transformed = "{\"role\":\"Software Engineer\",\"projects\":[{\"id\":1}],"
+                + "\"projects_copied\":[{\"id\":1,\"Copied_field_role\":\"Software Engineer\"}]}";
+        StringBuilder json = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            json.append("{\"child\":");
+            expected.append("{\"child\":");
+        }
+        json.append(match);
+        expected.append(transformed);
+        for (int i = 0; i < depth; i++) {
+            json.append('}');
+            expected.append('}');
+        }
+
+        AtomicReference<Object> result = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                result.set(modify(json.toString()));
+            } catch (Throwable e) {
+                result.set(e);
+            }
+        }, "deep-nesting", 512 * 1024);
+        thread.start();
+        thread.join();
+
+        if (result.get() instanceof Throwable) {
+            throw new AssertionError("Transform failed", (Throwable) result.get());
+        }
+        assertEquals(expected.toString(), result.get());
+    }
+
+    private static String modify(String json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonModifier.modifyJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), out,
+                "role", "Software Engineer", "Copied_field_role");
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+}
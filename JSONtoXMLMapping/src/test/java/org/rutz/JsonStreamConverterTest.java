@@ -0,0 +1,75 @@
+package org.rutz;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonStreamConverterTest {
+
+    private static MappingPlan plan;
+
+    @BeforeAll
+    static void compilePlan() throws Exception {
+        plan = TestCompanies.plan();
+    }
+
+    @Test
+    void writesTheSameXmlAsTheObjectGraph() throws Exception {
+        Company company = TestCompanies.generate(3, 2, 4, 2);
+        company.getBranches().get(0).getTeams().get(0).getMembers().get(1).setName(null);
+        String json = TestCompanies.toJson(company);
+
+        for (XmlWriteOptions options : new XmlWriteOptions[]{XmlWriteOptions.defaults(), XmlWriteOptions.compact()}) {
+            assertEquals(objectGraphXml(company, options), convert(new JsonStreamConverter(plan), json, options));
+        }
+    }
+
+    @Test
+    void writesTheSameXmlAfterTransformingTheJson() throws Exception {
+        Company company = TestCompanies.generate(2, 2, 2, 1);
+        String json = TestCompanies.toJson(company)
+                .replace("\"companyName\"", "\"name\"")
+                .replace("\"teams\":", "\"internal\":{\"teams\":[1]},\"groups\":");
+        JsonTransformPipeline pipeline = JsonTransformPipeline.of(
+                JsonTransformRule.rename("name", "companyName").in(JsonTransformRule.ROOT),
+                JsonTransformRule.rename("groups", "teams").in("branches"),
+                JsonTransformRule.remove("internal").in("branches"));
+
+        XmlWriteOptions options = XmlWriteOptions.defaults();
+        assertEquals(objectGraphXml(company, options), convert(new JsonStreamConverter(plan, pipeline), json, options));
+    }
+
+    @Test
+    void writesTheSameXmlAfterFilteringTheJson() throws Exception {
+        Company company = TestCompanies.generate(2, 2, 3, 1);
+        company.getBranches().get(0).getTeams().get(1).getMembers().get(2).setRole("Former");
+        company.getBranches().get(1).getTeams().get(0).getMembers().get(0).setRole("Former");
+        String json = TestCompanies.toJson(company);
+        JsonTransformPipeline pipeline = JsonTransformPipeline.of(JsonTransformRule.filter("role", "Former").in("members"));
+
+        for (Company.Branch branch : company.getBranches()) {
+            for (Company.Team team : branch.getTeams()) {
+                team.getMembers().removeIf(member -> "Former".equals(member.getRole()));
+            }
+        }
+        XmlWriteOptions options = XmlWriteOptions.defaults();
+        assertEquals(objectGraphXml(company, options), convert(new JsonStreamConverter(plan, pipeline), json, options));
+    }
+
+    private static String objectGraphXml(Company company, XmlWriteOptions options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlBuilder.streamXml(plan, company, out, options);
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private static String convert(JsonStreamConverter converter, String json, XmlWriteOptions options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        converter.convert(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), out, options);
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+}
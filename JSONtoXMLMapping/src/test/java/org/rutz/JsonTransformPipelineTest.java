@@ -0,0 +1,133 @@
+package org.rutz;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonTransformPipelineTest {
+
+    private static final String COMPANY = "{\"companyName\":\"Acme\",\"branches\":["
+            + "{\"name\":\"North\",\"region\":\"EU\",\"teams\":[{\"name\":\"Core\",\"size\":3}]},"
+            + "{\"name\":\"South\",\"region\":\"NA\",\"teams\":[]}]}";
+
+    @Test
+    void renamesKeys() throws Exception {
+        assertEquals("{\"companyName\":\"Acme\",\"branches\":["
+                        + "{\"label\":\"North\",\"region\":\"EU\",\"teams\":[{\"label\":\"Core\",\"size\":3}]},"
+                        + "{\"label\":\"South\",\"region\":\"NA\",\"teams\":[]}]}",
+                transform(COMPANY, JsonTransformRule.rename("name", "label")));
+    }
+
+    @Test
+    void removesKeysWithTheirValues() throws Exception {
+        assertEquals("{\"companyName\":\"Acme\",\"branches\":[{\"name\":\"North\",\"region\":\"EU\"},"
+                        + "{\"name\":\"South\",\"region\":\"NA\"}]}",
+                transform(COMPANY, JsonTransformRule.remove("teams")));
+    }
+
+    @Test
+    void injectsFieldsAsTheLastMember() throws Exception {
+        assertEquals("{\"companyName\":\"Acme\",\"branches\":["
+                        + "{\"name\":\"North\",\"region\":\"EU\",\"teams\":[{\"name\":\"Core\",\"size\":3}],\"source\":\"api\"},"
+                        + "{\"name\":\"South\",\"region\":\"NA\",\"teams\":[],\"source\":\"api\"}]}",
+                transform(COMPANY, JsonTransformRule.inject("source", "api").in("branches")));
+    }
+
+    @Test
+    void injectsIntoTheTopLevelObject() throws Exception {
+        assertEquals("{\"id\":1,\"version\":\"2\"}",
+                transform("{\"id\":1}", JsonTransformRule.inject("version", "2").in(JsonTransformRule.ROOT)));
+    }
+
+    @Test
+    void copiesValues() throws Exception {
+        assertEquals("{\"companyName\":\"Acme\",\"branches\":["
+                        + "{\"name\":\"North\",\"region\":\"EU\",\"teams\":[{\"name\":\"Core\",\"size\":3}],"
+                        + "\"allTeams\":[{\"name\":\"Core\",\"size\":3,\"copied\":\"yes\"}]},"
+                        + "{\"name\":\"South\",\"region\":\"NA\",\"teams\":[],\"allTeams\":[]}]}",
+                transform(COMPANY, JsonTransformRule.copy("teams", "allTeams").tagCopies("copied", "yes")));
+    }
+
+    @Test
+    void appliesConditionalRulesOnlyToMatchingObjects() throws Exception {
+        assertEquals("{\"companyName\":\"Acme\",\"branches\":["
+                        + "{\"name\":\"North\",\"region\":\"EU\",\"teams\":[{\"name\":\"Core\",\"size\":3}],"
+                        + "\"euTeams\":[{\"name\":\"Core\",\"size\":3}],\"gdpr\":\"true\"},"
+                        + "{\"name\":\"South\",\"region\":\"NA\",\"teams\":[]}]}",
+                transform(COMPANY,
+                        JsonTransformRule.copy("teams", "euTeams").when("region", "EU"),
+                        JsonTransformRule.inject("gdpr", "true").when("region", "EU")));
+    }
+
+    @Test
+    void appliesAllRulesInOnePass() throws Exception {
+        assertEquals("{\"company\":\"Acme\",\"branches\":["
+                        + "{\"name\":\"North\",\"teams\":[{\"name\":\"Core\",\"size\":3,\"checked\":\"1\"}]},"
+                        + "{\"name\":\"South\",\"teams\":[]}]}",
+                transform(COMPANY,
+                        JsonTransformRule.rename("companyName", "company").in(JsonTransformRule.ROOT),
+                        JsonTransformRule.remove("region").in("branches"),
+                        JsonTransformRule.inject("checked", "1").in("teams")));
+    }
+
+    @Test
+    void filtersArrayItemsOnAMemberAfterTheirContent() throws Exception {
+        String json = "{\"branches\":[{\"teams\":[{\"name\":\"Core\"}],\"region\":\"NA\"},"
+                + "{\"teams\":[{\"name\":\"Ops\"}],\"region\":\"EU\"},{\"region\":\"NA\"}]}";
+
+        assertEquals("{\"branches\":[{\"teams\":[{\"name\":\"Ops\"}],\"region\":\"EU\"}]}",
+                transform(json, JsonTransformRule.filter("region", "NA").in("branches")));
+    }
+
+    @Test
+    void filtersObjectMembersWithTheirKeys() throws Exception {
+        String json = "{\"id\":1,\"draft\":{\"status\":\"hidden\",\"text\":\"x\"},"
+                + "\"final\":{\"status\":\"shown\"},\"status\":\"hidden\"}";
+
+        assertEquals("{\"id\":1,\"final\":{\"status\":\"shown\"},\"status\":\"hidden\"}",
+                transform(json, JsonTransformRule.filter("status", "hidden")));
+    }
+
+    @Test
+    void appliesOtherRulesToKeptObjectsAndCopiesWithoutDroppedOnes() throws Exception {
+        assertEquals("{\"companyName\":\"Acme\",\"branches\":["
+                        + "{\"label\":\"North\",\"region\":\"EU\",\"teams\":[],\"allTeams\":[]},"
+                        + "{\"label\":\"South\",\"region\":\"NA\",\"teams\":[],\"allTeams\":[]}]}",
+                transform(COMPANY,
+                        JsonTransformRule.filter("size", "3").in("teams"),
+                        JsonTransformRule.rename("name", "label").in("branches"),
+                        JsonTransformRule.copy("teams", "allTeams").in("branches")));
+    }
+
+    @Test
+    void filtersNestedObjectsInsideKeptOnes() throws Exception {
+        assertEquals("{\"companyName\":\"Acme\",\"branches\":["
+                        + "{\"name\":\"North\",\"region\":\"EU\",\"teams\":[]}]}",
+                transform(COMPANY,
+                        JsonTransformRule.filter("region", "NA").in("branches"),
+                        JsonTransformRule.filter("name", "Core").in("teams")));
+    }
+
+    @Test
+    void rejectsFiltersOnTheTopLevelObject() {
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonTransformRule.filter("id", "1").in(JsonTransformRule.ROOT));
+    }
+
+    @Test
+    void rejectsConditionsOnRenames() {
+        assertThrows(IllegalArgumentException.class, () -> JsonTransformRule.rename("a", "b").when("c", "d"));
+    }
+
+    private static String transform(String json, JsonTransformRule... rules) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonTransformPipeline.of(rules).transform(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), out);
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+}
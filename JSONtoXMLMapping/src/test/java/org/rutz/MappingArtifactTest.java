@@ -0,0 +1,99 @@
+package org.rutz;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappingArtifactTest {
+
+    // Magic, version, payload length and checksum
+    private static final int HEADER_SIZE = 4 + 2 + 4 + 4;
+
+    private static List<ExcelMappingReader.XmlMapping> mappings;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void readSheet() throws Exception {
+        mappings = ExcelMappingReader.readMappings("my.xlsx");
+    }
+
+    @Test
+    void readsBackTheMappingsOfTheSheet() throws Exception {
+        Path artifact = directory.resolve("my" + MappingArtifact.EXTENSION);
+        try (OutputStream out = Files.newOutputStream(artifact)) {
+            MappingArtifact.write(mappings, out);
+        }
+
+        assertTrue(mappings.size() > 1);
+        assertEquals(rows(mappings), rows(MappingArtifact.readFile(artifact)));
+    }
+
+    @Test
+    void rejectsACorruptPayload() throws Exception {
+        byte[] artifact = write(mappings);
+        // A byte in the middle of the payload
+        artifact[HEADER_SIZE + (artifact.length - HEADER_SIZE) / 2] ^= 0x01;
+
+        IOException e = assertThrows(IOException.class,
+                () -> MappingArtifact.read(new ByteArrayInputStream(artifact), "corrupt.xmap"));
+        assertTrue(e.getMessage().startsWith("Checksum mismatch"), e.getMessage());
+    }
+
+    @Test
+    void rejectsOtherFiles() {
+        byte[] sheet = "PK\u0003\u0004 not an artifact".getBytes(StandardCharsets.US_ASCII);
+
+        IOException e = assertThrows(IOException.class,
+                () -> MappingArtifact.read(new ByteArrayInputStream(sheet), "my.xlsx"));
+        assertEquals("Not a mapping artifact: my.xlsx", e.getMessage());
+    }
+
+    @Test
+    void rejectsOtherVersions() throws Exception {
+        byte[] artifact = write(mappings);
+        artifact[5] = 2;
+
+        IOException e = assertThrows(IOException.class,
+                () -> MappingArtifact.read(new ByteArrayInputStream(artifact), "future.xmap"));
+        assertTrue(e.getMessage().startsWith("Unsupported mapping artifact version 2"), e.getMessage());
+    }
+
+    private static byte[] write(List<ExcelMappingReader.XmlMapping> mappings) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MappingArtifact.write(mappings, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return The columns of every mapping; XmlMapping has no equals. Missing cells are stored as empty strings.
+     */
+    private static List<List<String>> rows(List<ExcelMappingReader.XmlMapping> mappings) {
+        List<List<String>> rows = new ArrayList<>();
+        for (ExcelMappingReader.XmlMapping mapping : mappings) {
+            List<String> row = new ArrayList<>();
+            for (String value : Arrays.asList(mapping.getGroup(), mapping.getApiFieldName(), mapping.getApiDataType(),
+                    mapping.getXmlDataType(), mapping.getXmlPath())) {
+                row.add(value == null ? "" : value);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
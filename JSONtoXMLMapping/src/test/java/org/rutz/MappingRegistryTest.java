@@ -0,0 +1,134 @@
+package org.rutz;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappingRegistryTest {
+
+    private static List<ExcelMappingReader.XmlMapping> mappings;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void readSheet() throws Exception {
+        mappings = ExcelMappingReader.readMappings("my.xlsx");
+    }
+
+    @Test
+    void reloadsAChangedFile() throws Exception {
+        Path file = directory.resolve("company.xmap");
+        writeArtifact(file, mappings, 0);
+        try (MappingRegistry registry = new MappingRegistry(4, null)) {
+            MappingRegistry.Entry first = registry.get(file.toString());
+
+            writeArtifact(file, mappings.subList(0, mappings.size() - 1), 10);
+            registry.reloadChanged();
+
+            MappingRegistry.Entry second = registry.get(file.toString());
+            assertEquals(mappings.size() - 1, second.getMappings().size());
+            assertNotEquals(first.getContentHash(), second.getContentHash());
+            assertNotSame(first.getPlan(), second.getPlan());
+        }
+    }
+
+    @Test
+    void keepsThePlanWhileTheContentIsUnchanged() throws Exception {
+        Path file = directory.resolve("company.xmap");
+        writeArtifact(file, mappings, 0);
+        try (MappingRegistry registry = new MappingRegistry(4, null)) {
+            MappingRegistry.Entry first = registry.get(file.toString());
+
+            // Rewritten with the same content: a new modification time, the same hash
+            writeArtifact(file, mappings, 10);
+            registry.reloadChanged();
+
+            MappingRegistry.Entry second = registry.get(file.toString());
+            assertNotEquals(first.getLastModified(), second.getLastModified());
+            assertEquals(first.getContentHash(), second.getContentHash());
+            assertSame(first.getPlan(), second.getPlan());
+            assertSame(first.getMappings(), second.getMappings());
+        }
+    }
+
+    @Test
+    void keepsThePreviousVersionUntilABrokenFileIsFixed() throws Exception {
+        Path file = directory.resolve("company.xmap");
+        writeArtifact(file, mappings, 0);
+        try (MappingRegistry registry = new MappingRegistry(4, null)) {
+            MappingRegistry.Entry first = registry.get(file.toString());
+
+            Files.write(file, "not an artifact".getBytes(StandardCharsets.US_ASCII));
+            Files.setLastModifiedTime(file, shifted(file, 10));
+            registry.reloadChanged();
+            registry.reloadChanged();
+            assertSame(first, registry.get(file.toString()));
+
+            writeArtifact(file, mappings.subList(0, 2), 20);
+            registry.reloadChanged();
+            assertEquals(2, registry.get(file.toString()).getMappings().size());
+        }
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedSource() throws Exception {
+        Path a = directory.resolve("a.xmap");
+        Path b = directory.resolve("b.xmap");
+        Path c = directory.resolve("c.xmap");
+        for (Path file : new Path[]{a, b, c}) {
+            writeArtifact(file, mappings, 0);
+        }
+        try (MappingRegistry registry = new MappingRegistry(2, null)) {
+            MappingRegistry.Entry entryA = registry.get(a.toString());
+            MappingRegistry.Entry entryB = registry.get(b.toString());
+            Thread.sleep(1);
+            registry.get(a.toString());
+            Thread.sleep(1);
+
+            registry.get(c.toString());
+
+            assertEquals(2, registry.size());
+            assertSame(entryA, registry.get(a.toString()));
+            assertNotSame(entryB, registry.get(b.toString()));
+            assertEquals(2, registry.size());
+        }
+    }
+
+    @Test
+    void rejectsAnEmptyRegistry() {
+        assertThrows(IllegalArgumentException.class, () -> new MappingRegistry(0, Duration.ofSeconds(1)));
+    }
+
+    /**
+     * Writes the mappings as an artifact, dated {@code seconds} after the current file, so the change is seen on file
+     * systems with coarse timestamps.
+     */
+    private static void writeArtifact(Path file, List<ExcelMappingReader.XmlMapping> mappings, int seconds) throws Exception {
+        FileTime modified = Files.exists(file) ? shifted(file, seconds) : null;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            MappingArtifact.write(mappings, out);
+        }
+        if (modified != null) {
+            Files.setLastModifiedTime(file, modified);
+        }
+    }
+
+    private static FileTime shifted(Path file, int seconds) throws Exception {
+        return FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + seconds * 1000L);
+    }
+}
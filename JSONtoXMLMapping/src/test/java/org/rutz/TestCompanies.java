@@ -0,0 +1,52 @@
+package org.rutz;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds Company graphs of a given shape for the tests, with values that need escaping and salaries that do not all
+ * convert.
+ */
+final class TestCompanies {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private TestCompanies() {
+    }
+
+    static Company generate(int branchCount, int teamCount, int memberCount, int itemCount) {
+        List<Company.Branch> branches = new ArrayList<>();
+        for (int b = 0; b < branchCount; b++) {
+            List<Company.Team> teams = new ArrayList<>();
+            for (int t = 0; t < teamCount; t++) {
+                List<Company.Member> members = new ArrayList<>();
+                for (int m = 0; m < memberCount; m++) {
+                    String id = b + "-" + t + "-" + m;
+                    List<Company.Task> tasks = new ArrayList<>();
+                    List<Company.Campaign> campaigns = new ArrayList<>();
+                    for (int i = 0; i < itemCount; i++) {
+                        tasks.add(Company.Task.builder().taskId("T" + id + "-" + i).description("Fix <bug> & test " + i)
+                                .status("Open").build());
+                        campaigns.add(Company.Campaign.builder().campaignId("C" + i).name("Campaign " + i)
+                                .status("Ongoing").build());
+                    }
+                    members.add(Company.Member.builder().id("M" + id).name("Member " + m).role("Developer")
+                            .salary(m % 3 == 0 ? "n/a" : (1000 + m) + ".50").tasks(tasks).campaigns(campaigns).build());
+                }
+                teams.add(Company.Team.builder().teamNameSD("SD " + t).teamNameMK("MK " + t).members(members).build());
+            }
+            branches.add(Company.Branch.builder().branchNameNA("NA " + b).branchNameEU("EU " + b).teams(teams).build());
+        }
+        return Company.builder().companyName("Global & Co").companyLocation("London").branches(branches).build();
+    }
+
+    static String toJson(Company company) throws Exception {
+        return MAPPER.writeValueAsString(company);
+    }
+
+    static MappingPlan plan() throws Exception {
+        return MappingPlan.compile(ExcelMappingReader.readMappings("my.xlsx"));
+    }
+}
@@ -0,0 +1,127 @@
+package org.rutz;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Utf8XmlOutputTest {
+
+    private static final XmlWriteOptions[] OPTIONS = {XmlWriteOptions.defaults(), XmlWriteOptions.compact()};
+
+    /**
+     * The calls a document is written with, against either output.
+     */
+    private interface Document {
+        void write(XmlOutput output) throws Exception;
+    }
+
+    @Test
+    void escapesMarkupLikeStax() throws Exception {
+        assertSameBytes(output -> {
+            output.startElement("company");
+            output.textElement("name", "Global & Co <b>Tools</b> \"quoted\" 'single'");
+            output.textElement("empty", "");
+            output.startElement("branches");
+            output.startElement("branch");
+            output.text("a&&b>>c<<");
+            output.endElement();
+            output.startElement("none");
+            output.endElement();
+            output.endElement();
+            output.endElement();
+        });
+    }
+
+    @Test
+    void encodesMultiByteCharactersLikeStax() throws Exception {
+        // 2-byte é and ü, 3-byte € and 中, 4-byte 😀 as a surrogate pair
+        assertSameBytes(output -> {
+            output.startElement("company");
+            output.textElement("name", "Café Müller € 中文 😀 end");
+            output.textElement(XmlName.of("city"), new StringBuilder("Zürich 🏔"));
+            output.endElement();
+        });
+    }
+
+    @Test
+    void writesTextCrossingTheBufferLikeStax() throws Exception {
+        // Every alignment of 1-, 2-, 3- and 4-byte characters against the end of the buffer
+        for (int offset = 0; offset < 4; offset++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < offset; i++) {
+                text.append('x');
+            }
+            while (text.length() < Utf8XmlOutput.BUFFER_SIZE * 2) {
+                text.append("a&é€😀<");
+            }
+            String value = text.toString();
+            assertSameBytes(output -> {
+                output.startElement("company");
+                output.textElement("description", value);
+                output.endElement();
+            });
+        }
+    }
+
+    @Test
+    void writesUnpairedSurrogatesAsQuestionMarks() throws Exception {
+        for (XmlWriteOptions options : OPTIONS) {
+            byte[] expected = stax(options, document("lone ? high, ? low, ?? reversed"));
+            byte[] actual = utf8(options, document("lone \uD800 high, \uDC00 low, \uDE00\uD83D reversed"));
+
+            assertArrayEquals(expected, actual);
+            assertTrue(new String(actual, StandardCharsets.UTF_8).contains("lone ? high"));
+        }
+    }
+
+    private static Document document(String text) {
+        return output -> {
+            output.startElement("company");
+            output.textElement("name", text);
+            output.endElement();
+        };
+    }
+
+    /**
+     * Asserts both outputs write the same bytes, pretty-printed and compact, to an OutputStream and to a channel.
+     */
+    private static void assertSameBytes(Document document) throws Exception {
+        for (XmlWriteOptions options : OPTIONS) {
+            byte[] expected = stax(options, document);
+            assertArrayEquals(expected, utf8(options, document));
+
+            ByteArrayOutputStream channelBytes = new ByteArrayOutputStream();
+            try (Utf8XmlOutput output = new Utf8XmlOutput(Channels.newChannel(channelBytes), options)) {
+                write(output, document);
+            }
+            assertArrayEquals(expected, channelBytes.toByteArray());
+        }
+    }
+
+    private static byte[] stax(XmlWriteOptions options, Document document) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (StaxXmlOutput output = new StaxXmlOutput(out, options)) {
+            write(output, document);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] utf8(XmlWriteOptions options, Document document) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Utf8XmlOutput output = new Utf8XmlOutput(out, options)) {
+            write(output, document);
+        }
+        return out.toByteArray();
+    }
+
+    private static void write(XmlOutput output, Document document) throws Exception {
+        output.startDocument();
+        document.write(output);
+        output.endDocument();
+    }
+}
@@ -0,0 +1,155 @@
+package org.rutz;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValueConvertersTest {
+
+    @Test
+    void writesTextUnchanged() {
+        assertSame(ValueConverters.TEXT, ValueConverters.forType(null));
+        assertSame(ValueConverters.TEXT, ValueConverters.forType(" String "));
+        assertSame(ValueConverters.TEXT, ValueConverters.forType("-"));
+        assertEquals(" a & b ", convert("string", " a & b "));
+        assertEquals("12", convert("", 12));
+    }
+
+    @Test
+    void convertsIntegersWithinRange() {
+        assertEquals("42", convert("int", " 42 "));
+        assertEquals("-7", convert("INTEGER", "-7"));
+        assertEquals("7", convert("int", "+7"));
+        assertEquals("2147483647", convert("int", "2147483647"));
+        assertEquals("-2147483648", convert("int", "-2147483648"));
+        assertEquals("5", convert("int", 5L));
+        assertNull(convert("int", "2147483648"));
+        assertNull(convert("int", "-2147483649"));
+        assertNull(convert("int", 2147483648L));
+        assertNull(convert("int", "4.0"));
+        assertNull(convert("int", "four"));
+        assertNull(convert("int", "-"));
+        assertNull(convert("int", ""));
+    }
+
+    @Test
+    void rejectsLongsPastTheEdges() {
+        assertEquals("9223372036854775807", convert("long", "9223372036854775807"));
+        assertEquals("-9223372036854775808", convert("long", "-9223372036854775808"));
+        assertEquals("-9223372036854775808", convert("long", Long.MIN_VALUE));
+        assertEquals("9223372036854775807", convert("long", BigInteger.valueOf(Long.MAX_VALUE)));
+        assertNull(convert("long", "9223372036854775808"));
+        assertNull(convert("long", "-9223372036854775809"));
+        assertNull(convert("long", "99999999999999999999"));
+        assertNull(convert("long", BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)));
+    }
+
+    @Test
+    void convertsFloatingPointNumbers() {
+        assertEquals("1.5", convert("float", "1.5"));
+        assertEquals("1.0E10", convert("double", "1e10"));
+        assertEquals("0.1", convert("float", 0.1f));
+        assertEquals("NaN", convert("double", "NaN"));
+        assertNull(convert("double", "nan"));
+        assertNull(convert("float", "1.5.0"));
+        assertNull(convert("float", "0x10"));
+    }
+
+    @Test
+    void roundsDecimalsHalfUp() {
+        assertEquals("1234.50", convert("decimal(2)", "1234.5"));
+        assertEquals("2.35", convert("decimal(2)", "2.345"));
+        assertEquals("-2.35", convert("decimal(2)", "-2.345"));
+        assertEquals("3", convert("decimal(0)", new BigDecimal("2.5")));
+        assertEquals("0.10", convert("decimal(2)", 0.1f));
+        assertEquals("10000000000", convert("decimal", "1e10"));
+        assertEquals("0.1", convert("decimal", 0.1d));
+        assertNull(convert("decimal(2)", "n/a"));
+        assertNull(convert("decimal", Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> ValueConverters.forType("decimal(two)"));
+    }
+
+    @Test
+    void convertsBooleans() {
+        assertEquals("true", convert("boolean", "TRUE"));
+        assertEquals("true", convert("boolean", "1"));
+        assertEquals("false", convert("boolean", " False "));
+        assertEquals("false", convert("boolean", false));
+        assertNull(convert("boolean", "yes"));
+        assertNull(convert("boolean", "2"));
+    }
+
+    @Test
+    void acceptsOnlyListedEnumValues() {
+        assertEquals("Open", convert("enum(Open|Completed)", "Open"));
+        assertEquals("Completed", convert("enum( Open | Completed )", "Completed"));
+        assertNull(convert("enum(Open|Completed)", "open"));
+        assertNull(convert("enum(Open|Completed)", "Closed"));
+        assertThrows(IllegalArgumentException.class, () -> ValueConverters.forType("enum()"));
+    }
+
+    @Test
+    void convertsIsoDates() {
+        assertEquals("2021-02-28", convert("date", "2021-02-28"));
+        assertEquals("2020-02-29", convert("date", "2020-02-29"));
+        assertEquals("2021-03-04", convert("date", LocalDate.of(2021, 3, 4)));
+        assertNull(convert("date", "2021-02-29"));
+        assertNull(convert("date", "2021-04-31"));
+        assertNull(convert("date", "2021-13-01"));
+        assertNull(convert("date", "2021-2-28"));
+    }
+
+    @Test
+    void rejectsImpossibleDatesInCustomPatterns() {
+        assertEquals("2021-02-28", convert("date(dd/MM/yyyy)", "28/02/2021"));
+        assertEquals("2020-02-29", convert("date(dd/MM/uuuu)", "29/02/2020"));
+        assertEquals("2021-01-02", convert("date('yyyy' dd/MM/yyyy)", "yyyy 02/01/2021"));
+        assertNull(convert("date(dd/MM/yyyy)", "31/02/2021"));
+        assertNull(convert("date(dd/MM/yyyy)", "29/02/2021"));
+        assertNull(convert("date(dd/MM/yyyy)", "2021-02-28"));
+        assertNull(convert("date(dd/MM/yyyy)", "28/02/2021 extra"));
+    }
+
+    @Test
+    void convertsDateTimes() {
+        assertEquals("2021-04-30T10:00:00", convert("datetime", "2021-04-30T10:00:00"));
+        assertEquals("2021-04-30T10:00:00+02:00", convert("datetime", "2021-04-30T10:00+02:00"));
+        assertEquals("2021-04-30T10:00:00", convert("datetime(dd/MM/yyyy HH:mm)", "30/04/2021 10:00"));
+        assertEquals("2021-04-30T10:00:00", convert("datetime", LocalDateTime.of(2021, 4, 30, 10, 0)));
+        assertEquals("2021-04-30T10:00:00Z",
+                convert("datetime", OffsetDateTime.of(2021, 4, 30, 10, 0, 0, 0, ZoneOffset.UTC).toInstant()));
+        assertNull(convert("datetime(dd/MM/yyyy HH:mm)", "31/04/2021 10:00"));
+        assertNull(convert("datetime(dd/MM/yyyy HH:mm)", "30/04/2021 24:00"));
+        assertNull(convert("datetime", "2021-02-29T10:00:00"));
+        assertNull(convert("datetime", "2021-04-30"));
+    }
+
+    @Test
+    void rejectsInvalidTypesWhenResolved() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ValueConverters.forType("date(dd/MM/yyyy{)"));
+        assertTrue(e.getMessage().startsWith("Invalid XML data type 'date(dd/MM/yyyy{)'"));
+        assertThrows(IllegalArgumentException.class, () -> ValueConverters.forType("datetime(bbb)"));
+        assertThrows(IllegalArgumentException.class, () -> ValueConverters.forType("date(dd/MM/yyyy"));
+        assertSame(ValueConverters.TEXT, ValueConverters.forType("currency"));
+    }
+
+    /**
+     * @return The converted value, or null if the converter rejected it.
+     */
+    private static String convert(String type, Object value) {
+        StringBuilder out = new StringBuilder();
+        return ValueConverters.forType(type).convert(value, out) ? out.toString() : null;
+    }
+}
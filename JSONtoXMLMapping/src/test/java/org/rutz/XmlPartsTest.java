@@ -0,0 +1,141 @@
+package org.rutz;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XmlPartsTest {
+
+    private static MappingPlan plan;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void compilePlan() throws Exception {
+        plan = TestCompanies.plan();
+    }
+
+    @Test
+    void splitsByItemCount() throws Exception {
+        Company company = TestCompanies.generate(7, 2, 2, 1);
+        for (boolean concurrent : new boolean[]{false, true}) {
+            XmlSplitOptions split = XmlSplitOptions.builder().collection("branches").maxItems(3).concurrent(concurrent).build();
+            List<XmlPart> parts = XmlBuilder.streamXmlParts(plan, company, output(), split, XmlWriteOptions.defaults());
+
+            assertEquals(3, parts.size());
+            assertPart(parts.get(0), "company-0001.xml", 0, 3);
+            assertPart(parts.get(1), "company-0002.xml", 3, 3);
+            assertPart(parts.get(2), "company-0003.xml", 6, 1);
+            assertPartsMatch(company, parts, XmlWriteOptions.defaults());
+        }
+    }
+
+    @Test
+    void listsThePartsInTheManifest() throws Exception {
+        Company company = TestCompanies.generate(5, 1, 1, 1);
+        XmlSplitOptions split = XmlSplitOptions.builder().collection("branches").maxItems(2).build();
+        List<XmlPart> parts = XmlBuilder.streamXmlParts(plan, company, output(), split, XmlWriteOptions.defaults());
+
+        Document manifest = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(directory.resolve("company-manifest.xml").toFile());
+        Element root = manifest.getDocumentElement();
+        assertEquals("manifest", root.getTagName());
+        assertEquals("branches", text(root, "collection"));
+        assertEquals("5", text(root, "itemCount"));
+        NodeList partElements = root.getElementsByTagName("part");
+        assertEquals(parts.size(), partElements.getLength());
+        for (int i = 0; i < parts.size(); i++) {
+            Element element = (Element) partElements.item(i);
+            XmlPart part = parts.get(i);
+            assertEquals(part.getFileName(), text(element, "file"));
+            assertEquals(Integer.toString(part.getFirstItem()), text(element, "firstItem"));
+            assertEquals(Integer.toString(part.getItemCount()), text(element, "itemCount"));
+            assertEquals(Files.size(directory.resolve(part.getFileName())), Long.parseLong(text(element, "sizeBytes")));
+        }
+    }
+
+    @Test
+    void rollsOverBeforeTheByteBound() throws Exception {
+        Company company = TestCompanies.generate(9, 2, 2, 1);
+        XmlWriteOptions options = XmlWriteOptions.compact();
+        long itemBytes = itemBytes(company, 0, 1, options);
+        long maxBytes = itemBytes * 5 / 2;
+        XmlSplitOptions split = XmlSplitOptions.builder().collection("branches").maxBytes(maxBytes).build();
+        List<XmlPart> parts = XmlBuilder.streamXmlParts(plan, company, output(), split, options);
+
+        assertTrue(parts.size() > 1);
+        assertPartsMatch(company, parts, options);
+        for (int i = 0; i < parts.size(); i++) {
+            XmlPart part = parts.get(i);
+            long bytes = itemBytes(company, part.getFirstItem(), part.getItemCount(), options);
+            assertTrue(bytes <= maxBytes, "part " + i + " holds " + bytes + " bytes of items");
+            if (i + 1 < parts.size()) {
+                // The next item would not have fit
+                assertTrue(bytes + itemBytes(company, part.getFirstItem() + part.getItemCount(), 1, options) > maxBytes);
+            }
+        }
+    }
+
+    /**
+     * Checks that the parts cover the items in order, and that each is the document of just its items.
+     */
+    private void assertPartsMatch(Company company, List<XmlPart> parts, XmlWriteOptions options) throws Exception {
+        int next = 0;
+        for (XmlPart part : parts) {
+            assertEquals(next, part.getFirstItem());
+            assertTrue(part.getItemCount() > 0);
+            String xml = new String(Files.readAllBytes(directory.resolve(part.getFileName())), StandardCharsets.UTF_8);
+            assertEquals(streamXml(withBranches(company, part.getFirstItem(), part.getItemCount()), options), xml);
+            next += part.getItemCount();
+        }
+        assertEquals(company.getBranches().size(), next);
+    }
+
+    private static void assertPart(XmlPart part, String fileName, int firstItem, int itemCount) {
+        assertEquals(fileName, part.getFileName());
+        assertEquals(firstItem, part.getFirstItem());
+        assertEquals(itemCount, part.getItemCount());
+    }
+
+    /**
+     * @return The size of the given branches' XML, without the document around them.
+     */
+    private static long itemBytes(Company company, int from, int count, XmlWriteOptions options) throws Exception {
+        return streamXml(withBranches(company, from, count), options).getBytes(StandardCharsets.UTF_8).length
+                - streamXml(withBranches(company, 0, 0), options).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static Company withBranches(Company company, int from, int count) {
+        return Company.builder().companyName(company.getCompanyName()).companyLocation(company.getCompanyLocation())
+                .branches(company.getBranches().subList(from, from + count)).build();
+    }
+
+    private static String streamXml(Company company, XmlWriteOptions options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlBuilder.streamXml(plan, company, out, options);
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private static String text(Element parent, String tagName) {
+        return parent.getElementsByTagName(tagName).item(0).getTextContent();
+    }
+
+    private String output() {
+        return new File(directory.toFile(), "company.xml").getPath();
+    }
+}